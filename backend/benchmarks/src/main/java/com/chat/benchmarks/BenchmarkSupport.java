@@ -0,0 +1,89 @@
+package com.chat.benchmarks;
+
+import com.chat.model.Message;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark Support - Shared helpers for the benchmarks
+ *
+ * The benchmarks create the backend's classes without Spring, so the
+ * fields Spring would fill from application.properties (@Value) are set here.
+ */
+public final class BenchmarkSupport {
+
+    /**
+     * A typical user question (about 40 tokens)
+     */
+    public static final String USER_MESSAGE = "Can you explain how Spring Boot's dependency injection works, "
+            + "and when I should use constructor injection instead of field injection?";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Sets a (private) field, like Spring does for @Value fields
+     */
+    public static void setField(Object target, String name, Object value) {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can't set " + name, e);
+            }
+        }
+        throw new IllegalArgumentException("No field " + name + " in " + target.getClass().getName());
+    }
+
+    /**
+     * A conversation of the given length: alternating user / assistant messages
+     * with database IDs (so the token estimate cache is used, like in the app)
+     */
+    public static List<Message> history(int size) {
+        List<Message> history = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean user = i % 2 == 0;
+            history.add(new Message(user ? "user" : "assistant", text(i, user ? 120 : 600), (long) i + 1));
+        }
+        return history;
+    }
+
+    /**
+     * Some text of about the given length, different for every seed
+     */
+    public static String text(int seed, int length) {
+        StringBuilder text = new StringBuilder(length + 40);
+        int word = seed;
+        while (text.length() < length) {
+            text.append(WORDS[Math.floorMod(word, WORDS.length)]).append(' ');
+            word = word * 31 + 7;
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * A chat completion response like the AI API sends it
+     */
+    public static String completionResponse(String content) {
+        return "{\"id\":\"chatcmpl-9x8Yz\",\"object\":\"chat.completion\",\"created\":1718000000,"
+                + "\"model\":\"gpt-3.5-turbo-0125\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":\"" + content + "\"},\"logprobs\":null,\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":412,\"completion_tokens\":" + (content.length() / 4)
+                + ",\"total_tokens\":" + (412 + content.length() / 4) + "},\"system_fingerprint\":\"fp_3b956da36b\"}";
+    }
+
+    private static final String[] WORDS = {
+            "spring", "bean", "the", "container", "creates", "and", "injects", "a", "service", "into",
+            "controller", "when", "application", "starts", "constructor", "makes", "dependencies", "explicit",
+            "so", "tests", "can", "pass", "mocks", "field", "injection", "hides", "them", "final", "fields",
+            "cannot", "be", "null", "is", "of", "to", "with", "you", "for", "this", "that"
+    };
+}
@@ -0,0 +1,150 @@
+package com.chat.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compare To Baseline - Finds benchmarks that got slower (or allocate more)
+ *
+ * Reads two JMH result files (-rf json) and compares every benchmark found in both:
+ * - time (or throughput): a regression is more than the threshold worse AND
+ *   outside both error margins, so normal noise doesn't fail the check
+ * - allocation (-prof gc, bytes per operation): more than the threshold and
+ *   more than 64 bytes worse
+ * Counters a benchmark reports itself (@AuxCounters, unit "#", e.g. the
+ * payloadBytes of RequestBodyBenchmark) are printed too, but never fail the check.
+ *
+ * Usage: java -cp target/benchmarks.jar com.chat.benchmarks.CompareToBaseline
+ *            baselines/baseline.json target/current.json [threshold, default 0.10]
+ *
+ * Exits with 1 if anything regressed (so it can fail a CI job).
+ */
+public final class CompareToBaseline {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+    private static final double ALLOC_SLACK_BYTES = 64;
+    private static final String COUNTER_UNIT = "#";
+
+    private CompareToBaseline() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareToBaseline <baseline.json> <current.json> [threshold]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("NEW   %s%n", entry.getKey());
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+
+            JsonNode timeBefore = before.path("primaryMetric");
+            JsonNode timeAfter = after.path("primaryMetric");
+            boolean slower = worse(timeBefore, timeAfter, higherIsBetter, threshold);
+
+            JsonNode allocBefore = before.path("secondaryMetrics").path(ALLOC_NORM);
+            JsonNode allocAfter = after.path("secondaryMetrics").path(ALLOC_NORM);
+            boolean allocates = !allocBefore.isMissingNode() && !allocAfter.isMissingNode()
+                    && allocAfter.path("score").asDouble() > allocBefore.path("score").asDouble() * (1 + threshold)
+                    && allocAfter.path("score").asDouble() - allocBefore.path("score").asDouble() > ALLOC_SLACK_BYTES;
+
+            if (slower || allocates) {
+                regressions++;
+            }
+            System.out.printf("%s %s: %s -> %s %s%s%s%n", slower || allocates ? "WORSE" : "OK   ", entry.getKey(),
+                    format(timeBefore.path("score").asDouble()), format(timeAfter.path("score").asDouble()),
+                    timeAfter.path("scoreUnit").asText(),
+                    allocAfter.isMissingNode() || allocBefore.isMissingNode() ? ""
+                            : String.format(", %s -> %s B/op", format(allocBefore.path("score").asDouble()),
+                            format(allocAfter.path("score").asDouble())),
+                    counters(before, after));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("GONE  %s%n", key);
+            }
+        }
+
+        System.out.printf("%d regression(s), threshold %.0f%%%n", regressions, threshold * 100);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * true if the score moved past the threshold in the wrong direction and the error margins don't overlap
+     */
+    private static boolean worse(JsonNode before, JsonNode after, boolean higherIsBetter, double threshold) {
+        double b = before.path("score").asDouble();
+        double a = after.path("score").asDouble();
+        double margin = error(before) + error(after);
+        if (higherIsBetter) {
+            return a < b * (1 - threshold) && b - a > margin;
+        }
+        return a > b * (1 + threshold) && a - b > margin;
+    }
+
+    /**
+     * ", name before -> after" for every @AuxCounters counter of the current result
+     */
+    private static String counters(JsonNode before, JsonNode after) {
+        StringBuilder text = new StringBuilder();
+        Iterator<Map.Entry<String, JsonNode>> metrics = after.path("secondaryMetrics").fields();
+        while (metrics.hasNext()) {
+            Map.Entry<String, JsonNode> metric = metrics.next();
+            if (!COUNTER_UNIT.equals(metric.getValue().path("scoreUnit").asText())) {
+                continue;
+            }
+            JsonNode old = before.path("secondaryMetrics").path(metric.getKey()).path("score");
+            // Counts, so whole numbers
+            text.append(String.format(", %s %s -> %d", metric.getKey(),
+                    old.isMissingNode() ? "-" : Math.round(old.asDouble()),
+                    Math.round(metric.getValue().path("score").asDouble())));
+        }
+        return text.toString();
+    }
+
+    private static double error(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error; // NaN with a single iteration
+    }
+
+    /**
+     * Benchmark results by "name {param=value, ...}"
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText().replace("com.chat.", ""));
+            JsonNode params = result.path("params");
+            if (params.size() > 0) {
+                key.append(" {");
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(param.getKey()).append('=').append(param.getValue().asText());
+                    key.append(fields.hasNext() ? ", " : "}");
+                }
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static String format(double value) {
+        return value >= 100 ? String.format("%.0f", value) : String.format("%.3f", value);
+    }
+}
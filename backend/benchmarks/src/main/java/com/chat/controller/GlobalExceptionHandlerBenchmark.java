@@ -0,0 +1,100 @@
+package com.chat.controller;
+
+import com.chat.model.UserRegistrationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Global Exception Handler Benchmark - Answering invalid requests (400)
+ *
+ * - oneError / threeErrors: GlobalExceptionHandler building the response
+ *   for a MethodArgumentNotValidException with 1 or 3 field errors
+ * - validateAndHandle: the whole path of an invalid POST /api/auth/register -
+ *   Bean Validation of the body, the handler and writing the JSON response
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GlobalExceptionHandlerBenchmark {
+
+    GlobalExceptionHandler handler;
+    SpringValidatorAdapter validator;
+    ObjectMapper objectMapper;
+    MethodParameter parameter;
+    MethodArgumentNotValidException oneError;
+    MethodArgumentNotValidException threeErrors;
+    UserRegistrationRequest invalidRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        handler = new GlobalExceptionHandler();
+        validator = new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator());
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        parameter = new MethodParameter(
+                GlobalExceptionHandlerBenchmark.class.getDeclaredMethod("register", UserRegistrationRequest.class), 0);
+        invalidRequest = new UserRegistrationRequest("al", "not-an-email", "123");
+
+        BindingResult one = new BeanPropertyBindingResult(invalidRequest, "userRegistrationRequest");
+        one.addError(new FieldError("userRegistrationRequest", "email", "Email must be valid"));
+        oneError = new MethodArgumentNotValidException(parameter, one);
+
+        BindingResult three = new BeanPropertyBindingResult(invalidRequest, "userRegistrationRequest");
+        three.addError(new FieldError("userRegistrationRequest", "username",
+                "Username must be between 3 and 50 characters"));
+        three.addError(new FieldError("userRegistrationRequest", "email", "Email must be valid"));
+        three.addError(new FieldError("userRegistrationRequest", "password",
+                "Password must be at least 6 characters"));
+        threeErrors = new MethodArgumentNotValidException(parameter, three);
+    }
+
+    @Benchmark
+    public ResponseEntity<Map<String, Object>> oneError() {
+        return handler.handleValidationExceptions(oneError);
+    }
+
+    @Benchmark
+    public ResponseEntity<Map<String, Object>> threeErrors() {
+        return handler.handleValidationExceptions(threeErrors);
+    }
+
+    @Benchmark
+    public byte[] validateAndHandle() throws Exception {
+        BindingResult result = new BeanPropertyBindingResult(invalidRequest, "userRegistrationRequest");
+        validator.validate(invalidRequest, result);
+        ResponseEntity<Map<String, Object>> response =
+                handler.handleValidationExceptions(new MethodArgumentNotValidException(parameter, result));
+        return objectMapper.writeValueAsBytes(response.getBody());
+    }
+
+    /**
+     * Stands in for the controller method whose @Valid parameter failed
+     */
+    @SuppressWarnings("unused")
+    private void register(UserRegistrationRequest request) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.chat.controller;
+
+import com.chat.benchmarks.BenchmarkSupport;
+import com.chat.model.ChatMessage;
+import com.chat.model.MessagePage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * History Serialization Benchmark - Writing /api/history responses
+ *
+ * - list: GET /api/history/{id} without paging (all messages)
+ * - page: GET /api/history/{id}?limit=... (a MessagePage)
+ *
+ * Uses an ObjectMapper configured like Spring Boot's (Jackson2ObjectMapperBuilder).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistorySerializationBenchmark {
+
+    @Param({"50", "200"})
+    int messages;
+
+    ObjectMapper objectMapper;
+    List<ChatMessage> history;
+    MessagePage page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        LocalDateTime start = LocalDateTime.of(2024, 6, 1, 9, 0);
+        history = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            boolean user = i % 2 == 0;
+            history.add(new ChatMessage((long) i + 1, user ? "user" : "assistant",
+                    BenchmarkSupport.text(i, user ? 120 : 600), null, start.plusSeconds(i * 20L)));
+        }
+        page = new MessagePage(history, 1L, null);
+    }
+
+    @Benchmark
+    public byte[] list() throws Exception {
+        return objectMapper.writeValueAsBytes(history);
+    }
+
+    @Benchmark
+    public byte[] page() throws Exception {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,65 @@
+package com.chat.service;
+
+import com.chat.config.RateLimitProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate Limiter Benchmark - Cost of the rate limit check on every request
+ *
+ * - hotKey: one client sending all requests (one bucket, always empty)
+ * - manyKeys: requests spread over 100,000 clients
+ * - contended: 4 threads taking tokens from the same bucket
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+    private static final int KEYS = 100_000;
+
+    RateLimiter rateLimiter;
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rateLimiter = new RateLimiter(new RateLimitProperties(), new SimpleMeterRegistry());
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "user:" + i;
+        }
+    }
+
+    @Benchmark
+    public long hotKey() {
+        return rateLimiter.tryAcquire(RateLimiter.Group.HISTORY, "user:1");
+    }
+
+    @Benchmark
+    public long manyKeys() {
+        return rateLimiter.tryAcquire(RateLimiter.Group.HISTORY, keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long contended() {
+        return rateLimiter.tryAcquire(RateLimiter.Group.CHAT, "user:1");
+    }
+}
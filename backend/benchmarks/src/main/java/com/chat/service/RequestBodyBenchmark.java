@@ -0,0 +1,248 @@
+package com.chat.service;
+
+import com.chat.benchmarks.BenchmarkSupport;
+import com.chat.config.AIRouterProperties;
+import com.chat.model.ChatMessage;
+import com.chat.model.Conversation;
+import com.chat.model.Message;
+import com.chat.model.User;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.repository.ConversationRepository;
+import com.chat.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request Body Benchmark - Building the AI API request for a chat turn
+ *
+ * buildRequestBody picks the history that fits the context window and builds
+ * the request; buildAndSerialize also writes the JSON bytes that are sent
+ * (ChatCompletionCodec, like AIService does). turn does what ChatService does
+ * for a turn: the tail query on an H2 database (newest maxHistoryMessages
+ * only), then building and writing the request.
+ * historySize is the number of stored messages. The window is capped by
+ * ai.context.max-tokens / max-messages, so time, allocation and the payload
+ * should stay flat from 100 to 1000. buildAndSerialize and turn report what
+ * they send as extra results (see Payload): historyMessages and payloadBytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBodyBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int historySize;
+
+    AIService aiService;
+    TokenBudgetContextWindowPolicy policy;
+    ChatCompletionCodec codec;
+    List<Message> history;
+
+    ConfigurableApplicationContext database;
+    ChatMessageRepository chatMessageRepository;
+    Conversation conversation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        policy = newPolicy();
+        aiService = newAIService(policy);
+        codec = new ChatCompletionCodec(new ObjectMapper().getFactory());
+        history = BenchmarkSupport.history(historySize);
+        aiService.buildRequestBody(BenchmarkSupport.USER_MESSAGE, history, false); // Fill the token cache
+
+        database = new SpringApplicationBuilder(Database.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.main.banner-mode=off", "--spring.jpa.show-sql=false", "--logging.level.com.chat=ERROR",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark" + historySize);
+        chatMessageRepository = database.getBean(ChatMessageRepository.class);
+        conversation = seed(database, history);
+    }
+
+    /**
+     * Prints what a turn sends, so the output shows the window stays flat
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * What one call sends, as JMH extra results (next to the time, and in -rf json)
+     *
+     * JMH adds up EVENTS counters over the measurement iterations, so they are
+     * only set in the first one - the results are the values of a single call.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+
+        // History messages in the request (without the system prompt and the new message)
+        public long historyMessages;
+        // Size of the request JSON
+        public long payloadBytes;
+
+        private int measurementIterations;
+        private boolean record;
+
+        @Setup(Level.Iteration)
+        public void startIteration(IterationParams iteration) {
+            historyMessages = 0;
+            payloadBytes = 0;
+            record = iteration.getType() == IterationType.MEASUREMENT && ++measurementIterations == 1;
+        }
+
+        byte[] record(ChatCompletionCodec.Request request, byte[] json) {
+            if (record) {
+                historyMessages = request.messages().size() - 2;
+                payloadBytes = json.length;
+            }
+            return json;
+        }
+    }
+
+    @Benchmark
+    public ChatCompletionCodec.Request build() {
+        return aiService.buildRequestBody(BenchmarkSupport.USER_MESSAGE, history, false);
+    }
+
+    @Benchmark
+    public byte[] buildAndSerialize(Payload payload) {
+        ChatCompletionCodec.Request request = aiService.buildRequestBody(BenchmarkSupport.USER_MESSAGE, history, false);
+        return payload.record(request, codec.write(request));
+    }
+
+    /**
+     * Hibernate has a lot of code to compile first, so this one warms up longer
+     */
+    @Benchmark
+    @Warmup(iterations = 10, time = 2)
+    public byte[] turn(Payload payload) {
+        ChatCompletionCodec.Request request = turnRequest();
+        return payload.record(request, codec.write(request));
+    }
+
+    /**
+     * The tail query, oldest first, then the request (like ChatService.loadHistory)
+     */
+    private ChatCompletionCodec.Request turnRequest() {
+        List<ChatMessage> recentMessages = chatMessageRepository.findByConversationAndIdGreaterThanOrderByCreatedAtDescIdDesc(
+                conversation, 0L, PageRequest.of(0, policy.maxHistoryMessages()));
+        List<Message> recent = new ArrayList<>(recentMessages.size());
+        for (ChatMessage message : recentMessages) {
+            recent.add(message.toMessage());
+        }
+        Collections.reverse(recent);
+        return aiService.buildRequestBody(BenchmarkSupport.USER_MESSAGE, recent, false);
+    }
+
+    /**
+     * Just the database part of the app: the entities, the repositories and
+     * H2 (application.properties of the backend)
+     */
+    @Configuration
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class})
+    @EntityScan("com.chat.model")
+    @EnableJpaRepositories("com.chat.repository")
+    static class Database {
+    }
+
+    /**
+     * Stores the history as one conversation, with the same IDs the in-memory
+     * history has (fresh sequences, so the token cache entries match)
+     */
+    private static Conversation seed(ConfigurableApplicationContext database, List<Message> history) {
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setEmail("benchmark@example.com");
+        user.setPassword("-");
+        user = database.getBean(UserRepository.class).save(user);
+
+        Conversation conversation = new Conversation();
+        conversation.setUser(user);
+        conversation.setTitle("Benchmark");
+        conversation = database.getBean(ConversationRepository.class).save(conversation);
+
+        List<ChatMessage> messages = new ArrayList<>(history.size());
+        for (Message message : history) {
+            ChatMessage chatMessage = new ChatMessage();
+            chatMessage.setConversation(conversation);
+            chatMessage.setRole(message.getRole());
+            chatMessage.setContent(message.getContent());
+            messages.add(chatMessage);
+        }
+        database.getBean(ChatMessageRepository.class).saveAll(messages);
+        return conversation;
+    }
+
+    /**
+     * The context window policy with the default settings of application.properties
+     */
+    static TokenBudgetContextWindowPolicy newPolicy() {
+        TokenBudgetContextWindowPolicy policy = new TokenBudgetContextWindowPolicy();
+        BenchmarkSupport.setField(policy, "maxTokens", 3000);
+        BenchmarkSupport.setField(policy, "maxMessages", 50);
+        BenchmarkSupport.setField(policy, "tokenCacheSize", 10000);
+        return policy;
+    }
+
+    /**
+     * An AIService with the default settings of application.properties, without Spring
+     */
+    static AIService newAIService() {
+        return newAIService(newPolicy());
+    }
+
+    private static AIService newAIService(TokenBudgetContextWindowPolicy policy) {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AIService aiService = new AIService(WebClient.builder(), policy,
+                new ResponseCache(null, Schedulers.immediate(), meterRegistry), meterRegistry,
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(),
+                new RetryPolicy(meterRegistry),
+                new AIRouter(new AIRouterProperties(), meterRegistry, "http://localhost:9099", "key", "gpt-3.5-turbo"),
+                new TokenQuotaScheduler(meterRegistry));
+        BenchmarkSupport.setField(aiService, "modelName", "gpt-3.5-turbo");
+        BenchmarkSupport.setField(aiService, "temperature", 0.7);
+        return aiService;
+    }
+}
@@ -0,0 +1,87 @@
+package com.chat.service;
+
+import com.chat.benchmarks.BenchmarkSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response Parsing Benchmark - Reading an AI API response
+ *
+ * - aiService: what a chat call does - ChatCompletionCodec reads content and
+ *   usage from the response bytes in one pass, without building a tree
+ * - treeOnce: the same values from a JsonNode tree (for comparison)
+ * - chunk: one streamed chunk, read once per token while streaming
+ *
+ * contentLength is the length of the answer in characters (2000 = about the
+ * 500 token limit of a completion).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParsingBenchmark {
+
+    private static final String CHUNK = "{\"id\":\"chatcmpl-9x8Yz\",\"object\":\"chat.completion.chunk\","
+            + "\"created\":1718000000,\"model\":\"gpt-3.5-turbo-0125\",\"choices\":[{\"index\":0,"
+            + "\"delta\":{\"content\":\" injection\"},\"logprobs\":null,\"finish_reason\":null}]}";
+
+    @Param({"200", "2000"})
+    int contentLength;
+
+    AIService aiService;
+    ChatCompletionCodec codec;
+    ObjectMapper objectMapper;
+    byte[] response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        aiService = RequestBodyBenchmark.newAIService();
+        objectMapper = new ObjectMapper();
+        codec = new ChatCompletionCodec(objectMapper.getFactory());
+        response = BenchmarkSupport.completionResponse(BenchmarkSupport.text(1, contentLength))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void aiService(Blackhole blackhole) {
+        ChatCompletionCodec.Response parsed = codec.readResponse(response);
+        blackhole.consume(parsed.promptTokens());
+        blackhole.consume(parsed.completionTokens());
+        blackhole.consume(aiService.usedTokens(parsed));
+        blackhole.consume(parsed.content());
+    }
+
+    @Benchmark
+    public void treeOnce(Blackhole blackhole) throws IOException {
+        JsonNode root = objectMapper.readTree(response);
+        JsonNode usage = root.path("usage");
+        blackhole.consume(usage.path("prompt_tokens").asLong());
+        blackhole.consume(usage.path("completion_tokens").asLong());
+        blackhole.consume(usage.path("total_tokens").asLong());
+        blackhole.consume(root.path("choices").path(0).path("message").path("content").asText().trim());
+    }
+
+    @Benchmark
+    public String chunk() {
+        return codec.readChunk(CHUNK).content();
+    }
+}
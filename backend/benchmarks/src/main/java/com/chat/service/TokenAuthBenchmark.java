@@ -0,0 +1,64 @@
+package com.chat.service;
+
+import com.chat.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token Auth Benchmark - What authenticating one request costs
+ *
+ * - tokenVerify: checking a login token (TokenService, HMAC-SHA256), done on
+ *   every request
+ * - bcryptMatches: checking a password with BCrypt at auth.bcrypt.strength=10,
+ *   what every request would cost if it sent the password instead; the app
+ *   only does this once, at login
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenAuthBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    TokenService tokenService;
+    String token;
+    BCryptPasswordEncoder passwordEncoder;
+    String passwordHash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tokenService = new TokenService("benchmark-secret-benchmark-secret", 720, true);
+        User user = new User();
+        user.setId(42L);
+        user.setUsername("alice");
+        token = tokenService.issue(user);
+
+        passwordEncoder = new BCryptPasswordEncoder(10);
+        passwordHash = passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public TokenService.Claims tokenVerify() {
+        return tokenService.verify(token);
+    }
+
+    @Benchmark
+    public boolean bcryptMatches() {
+        return passwordEncoder.matches(PASSWORD, passwordHash);
+    }
+}
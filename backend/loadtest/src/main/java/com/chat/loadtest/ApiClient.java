@@ -0,0 +1,247 @@
+package com.chat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * API Client - Calls the chat backend like the frontend does
+ *
+ * Every failed call throws CallFailedException with an error type for the
+ * report: http_<status>, timeout, io_error, bad_response, app_error,
+ * ai_fallback (HTTP 200, but the answer isn't from the stub - the app
+ * answered with its fallback message) or stream_error / stream_incomplete.
+ */
+public class ApiClient {
+
+    /**
+     * A call that failed, with its error type
+     */
+    public static class CallFailedException extends RuntimeException {
+
+        private final String type;
+
+        public CallFailedException(String type, String message) {
+            super(message);
+            this.type = type;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+
+    /**
+     * A successful chat turn
+     *
+     * @param firstTokenNanos Time to the first streamed text (-1 when not streaming)
+     */
+    public record ChatResult(String conversationId, long firstTokenNanos) {}
+
+    private static final String PASSWORD = "loadtest-password";
+
+    private final HttpClient http;
+    private final String baseUrl;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public ApiClient(HttpClient http, String baseUrl, Duration timeout) {
+        this.http = http;
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Registers a user (if needed) and logs in
+     *
+     * @return The Bearer token
+     */
+    public String registerAndLogin(String username) {
+        Map<String, String> user = new LinkedHashMap<>();
+        user.put("username", username);
+        user.put("email", username + "@loadtest.local");
+        user.put("password", PASSWORD);
+        HttpResponse<String> registered = send(request("/api/auth/register", null)
+                .POST(HttpRequest.BodyPublishers.ofString(json(user))).build());
+        if (registered.statusCode() != 201 && registered.statusCode() != 400) { // 400 = exists already
+            throw failed(registered);
+        }
+        JsonNode login = postJson("/api/auth/login", json(Map.of("username", username, "password", PASSWORD)), null);
+        return login.path("token").asText();
+    }
+
+    public JsonNode getJson(String path, String token) {
+        return parse(check(send(request(path, token).GET().build())));
+    }
+
+    public JsonNode postJson(String path, String body, String token) {
+        return parse(check(send(request(path, token).POST(HttpRequest.BodyPublishers.ofString(body)).build())));
+    }
+
+    /**
+     * POST /api/conversations/import
+     */
+    public JsonNode importConversations(String ndjson, String token) {
+        return parse(check(send(request("/api/conversations/import", token)
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson)).build())));
+    }
+
+    /**
+     * One chat turn
+     *
+     * @param endpoint chat, reactive or stream
+     * @param conversationId null to start a new conversation
+     */
+    public ChatResult chat(String endpoint, String message, String conversationId, String token) {
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("message", message);
+        if (conversationId != null) {
+            body.put("conversationId", conversationId);
+        }
+        if (endpoint.equals("stream")) {
+            return stream(json(body), token);
+        }
+        JsonNode response = postJson(endpoint.equals("reactive") ? "/api/chat/reactive" : "/api/chat", json(body), token);
+        if (!"success".equals(response.path("status").asText())) {
+            throw new CallFailedException("app_error", response.path("error").asText());
+        }
+        checkAnswer(response.path("response").asText());
+        return new ChatResult(response.path("conversationId").asText(), -1);
+    }
+
+    /**
+     * POST /api/chat/stream, reading the Server-Sent Events as they arrive
+     */
+    private ChatResult stream(String body, String token) {
+        long start = System.nanoTime();
+        HttpResponse<Stream<String>> response;
+        try {
+            response = http.send(request("/api/chat/stream", token)
+                    .header("Accept", "text/event-stream")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofLines());
+        } catch (IOException e) {
+            throw ioFailure(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallFailedException("interrupted", "Interrupted");
+        }
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+            throw new CallFailedException("http_" + response.statusCode(), "HTTP " + response.statusCode());
+        }
+
+        String conversationId = null;
+        long firstToken = -1;
+        StringBuilder answer = new StringBuilder();
+        boolean done = false;
+        String event = "message";
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext() && !done) {
+                String line = iterator.next();
+                if (line.startsWith("event:")) {
+                    event = line.substring(6).trim();
+                } else if (line.startsWith("data:")) {
+                    JsonNode data = parse(line.substring(5).trim());
+                    switch (event) {
+                        case "conversation" -> conversationId = data.path("conversationId").asText();
+                        case "delta" -> {
+                            if (firstToken < 0) {
+                                firstToken = System.nanoTime() - start;
+                            }
+                            answer.append(data.path("content").asText());
+                        }
+                        case "error" -> throw new CallFailedException("stream_error", data.path("error").asText());
+                        case "done" -> done = true;
+                        default -> { }
+                    }
+                } else if (line.isEmpty()) {
+                    event = "message";
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw ioFailure(e.getCause());
+        }
+        if (!done) {
+            throw new CallFailedException("stream_incomplete", "Stream ended without done event");
+        }
+        checkAnswer(answer.toString());
+        return new ChatResult(conversationId, firstToken);
+    }
+
+    /**
+     * Answers that don't come from the stub are the app's fallback messages (AI call failed)
+     */
+    private static void checkAnswer(String answer) {
+        if (!answer.startsWith(StubLlmServer.ANSWER_PREFIX)) {
+            throw new CallFailedException("ai_fallback", answer.length() > 80 ? answer.substring(0, 80) : answer);
+        }
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private HttpResponse<String> send(HttpRequest request) {
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw ioFailure(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CallFailedException("interrupted", "Interrupted");
+        }
+    }
+
+    private static String check(HttpResponse<String> response) {
+        if (response.statusCode() / 100 != 2) {
+            throw failed(response);
+        }
+        return response.body();
+    }
+
+    private static CallFailedException failed(HttpResponse<String> response) {
+        return new CallFailedException("http_" + response.statusCode(), response.body());
+    }
+
+    private static CallFailedException ioFailure(IOException e) {
+        return e instanceof HttpTimeoutException
+                ? new CallFailedException("timeout", e.getMessage())
+                : new CallFailedException("io_error", String.valueOf(e.getMessage()));
+    }
+
+    private JsonNode parse(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new CallFailedException("bad_response", e.getMessage());
+        }
+    }
+
+    String json(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.chat.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency Distribution - How long the stub LLM waits before answering
+ *
+ * Written as text on the command line:
+ * - fixed:500          - always 500 ms
+ * - uniform:200:800    - anywhere between 200 and 800 ms
+ * - lognormal:800:3000 - median 800 ms, 99th percentile 3000 ms (long tail,
+ *                        like real LLM APIs)
+ */
+public interface LatencyDistribution {
+
+    /**
+     * A random latency in milliseconds
+     */
+    long sampleMillis();
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed" -> {
+                    long millis = Long.parseLong(parts[1]);
+                    return named(spec, () -> millis);
+                }
+                case "uniform" -> {
+                    long min = Long.parseLong(parts[1]);
+                    long max = Long.parseLong(parts[2]);
+                    if (max < min) {
+                        throw new IllegalArgumentException("max < min");
+                    }
+                    return named(spec, () -> min + ThreadLocalRandom.current().nextLong(max - min + 1));
+                }
+                case "lognormal" -> {
+                    double median = Double.parseDouble(parts[1]);
+                    double p99 = Double.parseDouble(parts[2]);
+                    if (median <= 0 || p99 < median) {
+                        throw new IllegalArgumentException("need 0 < median <= p99");
+                    }
+                    // ln(latency) is normal: mean ln(median), and p99 is 2.326 standard deviations above it
+                    double sigma = Math.log(p99 / median) / 2.326;
+                    return named(spec, () -> Math.round(median * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian())));
+                }
+                default -> throw new IllegalArgumentException("unknown type " + parts[0]);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Bad latency '" + spec
+                    + "' (use fixed:MS, uniform:MIN:MAX or lognormal:MEDIAN:P99): " + e.getMessage(), e);
+        }
+    }
+
+    private static LatencyDistribution named(String spec, LatencyDistribution distribution) {
+        return new LatencyDistribution() {
+            @Override
+            public long sampleMillis() {
+                return distribution.sampleMillis();
+            }
+
+            @Override
+            public String toString() {
+                return spec;
+            }
+        };
+    }
+}
@@ -0,0 +1,261 @@
+package com.chat.loadtest;
+
+import com.chat.ChatApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load Test - Runs the chat backend against a stub LLM and measures it
+ *
+ * 1. Starts StubLlmServer (no OpenRouter quota is used)
+ * 2. Starts the app in this JVM, pointed at the stub (or uses --app-url)
+ * 3. Creates the virtual users and their data
+ * 4. Runs all users for warm-up + duration, measuring only the duration
+ * 5. Writes a JSON report (throughput, p50/p90/p99/p99.9 latency, errors per
+ *    operation) and prints a summary
+ *
+ * Exits with 1 if the total error rate is above --max-error-rate, so it can
+ * fail a CI job. Run with --help for all options.
+ *
+ * With --stub-only=true only step 1 runs: the stub answers until the process
+ * is stopped, for trying the app without an API key.
+ */
+public class LoadTest {
+
+    private static final long PROGRESS_INTERVAL_MS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config;
+        try {
+            config = LoadTestConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            if (!e.getMessage().isEmpty()) {
+                System.err.println(e.getMessage());
+                System.err.println();
+            }
+            System.err.print(LoadTestConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+        System.exit(run(config) ? 0 : 1);
+    }
+
+    /**
+     * @return true if the error rate was acceptable
+     */
+    static boolean run(LoadTestConfig config) throws Exception {
+        StubLlmServer.Settings settings = new StubLlmServer.Settings(config.stubLatency, config.stubErrorRate,
+                config.stubErrorStatus, config.stubCompletionTokens, config.stubTokensPerSecond);
+        try (StubLlmServer stub = new StubLlmServer(settings, config.stubPort)) {
+            System.out.println("Stub LLM: " + stub.url() + " (" + config.stubLatency + ")");
+            if (config.stubOnly) {
+                System.out.println("Start the app with AI_API_URL=" + stub.url() + " - stop the stub with Ctrl+C");
+                Thread.currentThread().join(); // Until the process is stopped
+            }
+
+            ConfigurableApplicationContext app = null;
+            String baseUrl = config.appUrl;
+            if (baseUrl == null) {
+                app = SpringApplication.run(ChatApplication.class, appArgs(config, stub));
+                baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+            }
+            System.out.println("App: " + baseUrl);
+
+            try {
+                Results results = new Results();
+                runUsers(config, baseUrl, results);
+                return report(config, results, stub.stats());
+            } finally {
+                if (app != null) {
+                    app.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Spring Boot command line arguments of the app: the stub as AI API, no
+     * rate limits (all virtual users would share one quota), no app logs
+     * (failures end up in the report; --logging.level.com.chat=WARN shows
+     * them) and no tracing, then the --spring.properties from the command line
+     */
+    private static String[] appArgs(LoadTestConfig config, StubLlmServer stub) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("ai.api.url", stub.url());
+        properties.put("ai.api.key", "loadtest");
+        properties.put("rate-limit.enabled", "false");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("logging.level.com.chat", "OFF");
+        properties.put("logging.level.org.springframework.web", "WARN");
+        properties.put("logging.level.org.springframework.security", "WARN");
+        properties.put("management.tracing.sampling.probability", "0");
+        properties.put("tracing.local-exporter.enabled", "false");
+        properties.putAll(config.appProperties);
+
+        List<String> args = new ArrayList<>();
+        properties.forEach((name, value) -> args.add("--" + name + "=" + value));
+        return args.toArray(String[]::new);
+    }
+
+    private static void runUsers(LoadTestConfig config, String baseUrl, Results results) throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(config.requestTimeout)
+                .build();
+        ApiClient client = new ApiClient(http, baseUrl, config.requestTimeout);
+        List<VirtualUser> users = createUsers(config, client, results);
+
+        ExecutorService executor = Executors.newFixedThreadPool(config.users);
+        try {
+            // Accounts and seed data, in parallel (not measured)
+            String runId = Long.toString(System.currentTimeMillis() % 1_000_000_000L, 36);
+            List<Future<?>> setUps = new ArrayList<>();
+            for (VirtualUser user : users) {
+                setUps.add(executor.submit(() -> user.setUp(runId)));
+            }
+            for (Future<?> setUp : setUps) {
+                setUp.get();
+            }
+            System.out.println("Set up " + users.size() + " users: " + count(users));
+
+            long warmupEnd = System.nanoTime() + config.warmup.toNanos();
+            long end = warmupEnd + config.duration.toNanos();
+            List<Future<?>> running = new ArrayList<>();
+            for (VirtualUser user : users) {
+                user.runUntil(end);
+                running.add(executor.submit(user));
+            }
+
+            if (!config.warmup.isZero()) {
+                System.out.println("Warming up for " + config.warmup.toSeconds() + "s...");
+                sleepUntil(warmupEnd);
+            }
+            results.start();
+            System.out.println("Measuring for " + config.duration.toSeconds() + "s...");
+            while (System.nanoTime() < end) {
+                sleepUntil(Math.min(end, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PROGRESS_INTERVAL_MS)));
+                long[] totals = results.totals();
+                System.out.printf("  %5.0fs  %8d requests  %6d failed  %8.1f req/s%n", results.durationSeconds(),
+                        totals[0], totals[1], totals[0] / results.durationSeconds());
+            }
+            results.stop();
+
+            // Let the users finish their last request
+            for (Future<?> user : running) {
+                user.get(config.requestTimeout.toMillis() + 5_000, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Users per scenario, split by the scenario weights (every scenario gets at least one)
+     */
+    private static List<VirtualUser> createUsers(LoadTestConfig config, ApiClient client, Results results) {
+        int totalWeight = config.scenarios.values().stream().mapToInt(Integer::intValue).sum();
+        List<Scenario> scenarios = new ArrayList<>(config.scenarios.keySet());
+        List<VirtualUser> users = new ArrayList<>();
+        int assigned = 0;
+        for (int i = 0; i < scenarios.size(); i++) {
+            Scenario scenario = scenarios.get(i);
+            int remainingScenarios = scenarios.size() - i - 1;
+            int count = i == scenarios.size() - 1
+                    ? config.users - assigned
+                    : Math.max(1, Math.min(config.users - assigned - remainingScenarios,
+                            Math.round((float) config.users * config.scenarios.get(scenario) / totalWeight)));
+            for (int j = 0; j < count; j++) {
+                users.add(new VirtualUser(users.size() + 1, scenario, config, client, results));
+            }
+            assigned += count;
+        }
+        return users;
+    }
+
+    private static Map<String, Long> count(List<VirtualUser> users) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (VirtualUser user : users) {
+            counts.merge(user.getScenario().id(), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long remaining = nanos - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    /**
+     * Writes the JSON report and prints the summary
+     *
+     * @return true if the total error rate is at most max-error-rate
+     */
+    private static boolean report(LoadTestConfig config, Results results, StubLlmServer.Stats stub) throws IOException {
+        List<Results.OperationSummary> operations = results.summaries();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", results.startedAt());
+        report.put("settings", config.describe());
+        report.put("durationSeconds", results.durationSeconds());
+        report.put("operations", operations);
+        Map<String, Object> stubReport = new LinkedHashMap<>();
+        stubReport.put("stats", stub);
+        stubReport.put("completionTokensPerSecond", stub.completionTokens() / results.durationSeconds());
+        report.put("stub", stubReport);
+        report.put("notes", List.of(
+                "Closed loop: each virtual user sends its next request after the previous answer",
+                "Latencies are of successful requests only; failures are counted in errors",
+                "Stub stats include the warm-up"));
+
+        File file = new File(config.report);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .writerWithDefaultPrettyPrinter()
+                .writeValue(file, report);
+
+        System.out.println();
+        System.out.printf("%-36s %9s %8s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        Results.OperationSummary total = null;
+        for (Results.OperationSummary op : operations) {
+            System.out.printf("%-36s %9d %7.2f%% %9.1f %9.1f %9.1f %9.1f %9.1f%n", op.name(), op.requests(),
+                    op.errorRate() * 100, op.throughput(), op.latencyMs().p50(), op.latencyMs().p99(),
+                    op.latencyMs().p999(), op.latencyMs().max());
+            if (!op.errors().isEmpty()) {
+                System.out.println("    errors: " + op.errors());
+            }
+            total = op;
+        }
+        System.out.println();
+        System.out.println("Report: " + file.getAbsolutePath());
+
+        if (total.errorRate() > config.maxErrorRate) {
+            System.out.printf("FAILED: error rate %.2f%% is above %.2f%%%n",
+                    total.errorRate() * 100, config.maxErrorRate * 100);
+            return false;
+        }
+        return true;
+    }
+}
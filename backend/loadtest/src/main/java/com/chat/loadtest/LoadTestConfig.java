@@ -0,0 +1,197 @@
+package com.chat.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load Test Config - Command line options of the load test
+ *
+ * Options are --name=value. Options with a dot (e.g. --ai.retry.max-attempts=1)
+ * are passed on to the app started by the load test, like Spring Boot
+ * command line arguments.
+ */
+public class LoadTestConfig {
+
+    static final String USAGE = """
+            Usage: java -jar target/loadtest.jar [--option=value ...] [--spring.property=value ...]
+
+            App
+              --app-url=URL                 Test an app that is already running (it must use the stub:
+                                            ai.api.url=http://127.0.0.1:<stub-port>/v1/chat/completions,
+                                            rate-limit.enabled=false). Default: start the app in this JVM.
+
+            Load
+              --users=20                    Concurrent virtual users
+              --duration=60s                Measured time (ms, s or m)
+              --warmup=10s                  Time before measuring starts
+              --scenarios=new-conversation:1,long-conversation:1,history-browsing:1
+                                            Scenario mix (users are split by weight)
+              --chat-endpoint=chat          chat (/api/chat), reactive (/api/chat/reactive) or stream (/api/chat/stream)
+              --think-time=0ms              Pause between iterations (random 0..value)
+              --request-timeout=60s         Client timeout per request
+              --long-turns=20               Turns before a long conversation starts over
+              --history-pages=3             Pages a history browser scrolls back
+              --history-page-size=50        Messages per page
+              --history-seed-conversations=5  Conversations imported per history browser
+              --history-seed-messages=200   Messages per imported conversation
+
+            Stub LLM
+              --stub-latency=lognormal:500:2000  fixed:MS, uniform:MIN:MAX or lognormal:MEDIAN:P99
+                                            (time to the answer, or to the first token of a stream)
+              --stub-error-rate=0           Share of AI calls (0..1) that fail
+              --stub-error-status=503       HTTP status of failed AI calls
+              --stub-completion-tokens=100  Tokens per answer
+              --stub-tokens-per-second=200  Generation speed (0 = all tokens at once)
+              --stub-port=0                 Stub port (0 = any free port)
+              --stub-only=false             true = only run the stub until stopped (Ctrl+C), e.g. for an
+                                            app started by hand with AI_API_URL pointed at it
+
+            Report
+              --report=target/loadtest-report.json
+              --max-error-rate=1            Exit with 1 if the total error rate is higher
+            """;
+
+    String appUrl;
+    int users = 20;
+    Duration duration = Duration.ofSeconds(60);
+    Duration warmup = Duration.ofSeconds(10);
+    Map<Scenario, Integer> scenarios = Scenario.parseMix("new-conversation:1,long-conversation:1,history-browsing:1");
+    String chatEndpoint = "chat";
+    Duration thinkTime = Duration.ZERO;
+    Duration requestTimeout = Duration.ofSeconds(60);
+    int longTurns = 20;
+    int historyPages = 3;
+    int historyPageSize = 50;
+    int historySeedConversations = 5;
+    int historySeedMessages = 200;
+
+    LatencyDistribution stubLatency = LatencyDistribution.parse("lognormal:500:2000");
+    double stubErrorRate = 0;
+    int stubErrorStatus = 503;
+    int stubCompletionTokens = 100;
+    double stubTokensPerSecond = 200;
+    int stubPort = 0;
+    boolean stubOnly;
+
+    String report = "target/loadtest-report.json";
+    double maxErrorRate = 1;
+
+    /**
+     * Spring properties for the app (options with a dot)
+     */
+    final Map<String, String> appProperties = new LinkedHashMap<>();
+
+    static LoadTestConfig parse(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                throw new IllegalArgumentException("");
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            try {
+                config.set(name, value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value for --" + name + ": " + value);
+            }
+        }
+        config.validate();
+        return config;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "app-url" -> appUrl = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+            case "users" -> users = Integer.parseInt(value);
+            case "duration" -> duration = parseDuration(value);
+            case "warmup" -> warmup = parseDuration(value);
+            case "scenarios" -> scenarios = Scenario.parseMix(value);
+            case "chat-endpoint" -> chatEndpoint = value;
+            case "think-time" -> thinkTime = parseDuration(value);
+            case "request-timeout" -> requestTimeout = parseDuration(value);
+            case "long-turns" -> longTurns = Integer.parseInt(value);
+            case "history-pages" -> historyPages = Integer.parseInt(value);
+            case "history-page-size" -> historyPageSize = Integer.parseInt(value);
+            case "history-seed-conversations" -> historySeedConversations = Integer.parseInt(value);
+            case "history-seed-messages" -> historySeedMessages = Integer.parseInt(value);
+            case "stub-latency" -> stubLatency = LatencyDistribution.parse(value);
+            case "stub-error-rate" -> stubErrorRate = Double.parseDouble(value);
+            case "stub-error-status" -> stubErrorStatus = Integer.parseInt(value);
+            case "stub-completion-tokens" -> stubCompletionTokens = Integer.parseInt(value);
+            case "stub-tokens-per-second" -> stubTokensPerSecond = Double.parseDouble(value);
+            case "stub-port" -> stubPort = Integer.parseInt(value);
+            case "stub-only" -> stubOnly = Boolean.parseBoolean(value);
+            case "report" -> report = value;
+            case "max-error-rate" -> maxErrorRate = Double.parseDouble(value);
+            default -> {
+                if (!name.contains(".")) {
+                    throw new IllegalArgumentException("Unknown option --" + name);
+                }
+                appProperties.put(name, value);
+            }
+        }
+    }
+
+    private void validate() {
+        if (users < 1 || longTurns < 1 || historyPages < 1 || historyPageSize < 1 || historySeedConversations < 1
+                || historySeedMessages < 1 || stubCompletionTokens < 1) {
+            throw new IllegalArgumentException("Counts must be at least 1");
+        }
+        if (!chatEndpoint.equals("chat") && !chatEndpoint.equals("reactive") && !chatEndpoint.equals("stream")) {
+            throw new IllegalArgumentException("--chat-endpoint must be chat, reactive or stream");
+        }
+        if (stubErrorRate < 0 || stubErrorRate > 1) {
+            throw new IllegalArgumentException("--stub-error-rate must be between 0 and 1");
+        }
+        if (users < scenarios.size()) {
+            throw new IllegalArgumentException("Need at least one user per scenario");
+        }
+    }
+
+    /**
+     * 500ms, 30s, 2m (a plain number is seconds)
+     */
+    static Duration parseDuration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    /**
+     * The settings, for the report
+     */
+    Map<String, Object> describe() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("appUrl", appUrl != null ? appUrl : "in-process");
+        settings.put("users", users);
+        settings.put("durationSeconds", duration.toMillis() / 1000.0);
+        settings.put("warmupSeconds", warmup.toMillis() / 1000.0);
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        scenarios.forEach((scenario, weight) -> mix.put(scenario.id(), weight));
+        settings.put("scenarios", mix);
+        settings.put("chatEndpoint", chatEndpoint);
+        settings.put("thinkTimeMs", thinkTime.toMillis());
+        settings.put("longTurns", longTurns);
+        settings.put("historyPages", historyPages);
+        settings.put("historyPageSize", historyPageSize);
+        settings.put("stubLatency", stubLatency.toString());
+        settings.put("stubErrorRate", stubErrorRate);
+        settings.put("stubErrorStatus", stubErrorStatus);
+        settings.put("stubCompletionTokens", stubCompletionTokens);
+        settings.put("stubTokensPerSecond", stubTokensPerSecond);
+        settings.put("appProperties", appProperties);
+        return settings;
+    }
+}
@@ -0,0 +1,167 @@
+package com.chat.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results - Latencies and errors of every operation the virtual users run
+ *
+ * Operations are named "scenario.step", e.g. "long_conversation.chat".
+ * Latencies are kept in HdrHistograms (microsecond resolution, 3 significant
+ * digits), so p99.9 stays exact enough without storing every sample.
+ * Nothing is recorded until start() - requests during the warm-up don't count.
+ */
+public class Results {
+
+    /**
+     * Percentiles of one latency histogram, in milliseconds
+     */
+    public record Latency(double p50, double p90, double p99, double p999, double max, double mean) {
+
+        static Latency of(Histogram histogram) {
+            return new Latency(millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()), Math.round(histogram.getMean()) / 1000.0);
+        }
+
+        private static double millis(long micros) {
+            return micros / 1000.0;
+        }
+    }
+
+    /**
+     * Summary of one operation
+     *
+     * @param throughput Requests per second (successful and failed)
+     * @param latencyMs Latency of the successful requests
+     * @param errors Failed requests by type (http_503, timeout, ai_fallback, ...)
+     */
+    public record OperationSummary(String name, long requests, long failed, double errorRate, double throughput,
+                                   Latency latencyMs, Map<String, Long> errors) {}
+
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+    private volatile Instant startedAt;
+    private volatile long startNanos;
+    private volatile long stopNanos;
+    private volatile boolean recording;
+
+    /**
+     * Starts recording (end of the warm-up)
+     */
+    public void start() {
+        startedAt = Instant.now();
+        startNanos = System.nanoTime();
+        recording = true;
+    }
+
+    /**
+     * Stops recording; requests still in progress don't count
+     */
+    public void stop() {
+        recording = false;
+        stopNanos = System.nanoTime();
+    }
+
+    /**
+     * When measuring started
+     */
+    public Instant startedAt() {
+        return startedAt;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public void success(String operation, long nanos) {
+        if (recording) {
+            Operation op = operation(operation);
+            op.requests.increment();
+            op.latency.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        }
+    }
+
+    public void failure(String operation, String type) {
+        if (recording) {
+            Operation op = operation(operation);
+            op.requests.increment();
+            op.errors.computeIfAbsent(type, t -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Requests and failures recorded so far (for progress output)
+     */
+    public long[] totals() {
+        long requests = 0;
+        long failed = 0;
+        for (Operation op : operations.values()) {
+            requests += op.requests.sum();
+            failed += op.failed();
+        }
+        return new long[] {requests, failed};
+    }
+
+    public double durationSeconds() {
+        long end = recording ? System.nanoTime() : stopNanos;
+        return (end - startNanos) / 1e9;
+    }
+
+    /**
+     * Every operation, by name, and a "total" over all of them
+     */
+    public List<OperationSummary> summaries() {
+        double seconds = durationSeconds();
+        List<OperationSummary> summaries = new ArrayList<>();
+        Histogram all = new Histogram(3);
+        Map<String, Long> allErrors = new TreeMap<>();
+        long allRequests = 0;
+        long allFailed = 0;
+        for (Map.Entry<String, Operation> entry : new TreeMap<>(operations).entrySet()) {
+            Operation op = entry.getValue();
+            Histogram latency = op.latency.copy();
+            Map<String, Long> errors = new TreeMap<>();
+            op.errors.forEach((type, count) -> errors.put(type, count.sum()));
+            long requests = op.requests.sum();
+            long failed = op.failed();
+            summaries.add(summary(entry.getKey(), requests, failed, seconds, latency, errors));
+
+            all.add(latency);
+            errors.forEach((type, count) -> allErrors.merge(type, count, Long::sum));
+            allRequests += requests;
+            allFailed += failed;
+        }
+        summaries.add(summary("total", allRequests, allFailed, seconds, all, allErrors));
+        return summaries;
+    }
+
+    private static OperationSummary summary(String name, long requests, long failed, double seconds,
+                                            Histogram latency, Map<String, Long> errors) {
+        return new OperationSummary(name, requests, failed, requests == 0 ? 0 : (double) failed / requests,
+                seconds > 0 ? requests / seconds : 0, Latency.of(latency), errors);
+    }
+
+    private Operation operation(String name) {
+        return operations.computeIfAbsent(name, n -> new Operation());
+    }
+
+    private static final class Operation {
+
+        private final ConcurrentHistogram latency = new ConcurrentHistogram(3);
+        private final LongAdder requests = new LongAdder();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        private long failed() {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.chat.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Scenario - What a virtual user does, over and over
+ *
+ * - NEW_CONVERSATION: opens a new chat and asks one question
+ * - LONG_CONVERSATION: keeps talking in one chat (the history, and with it
+ *   the AI request, grows every turn) and starts over after long-turns turns
+ * - HISTORY_BROWSING: lists its conversations, opens one and scrolls back
+ *   through history-pages pages (no AI calls; conversations are imported first)
+ */
+public enum Scenario {
+
+    NEW_CONVERSATION("new-conversation"),
+    LONG_CONVERSATION("long-conversation"),
+    HISTORY_BROWSING("history-browsing");
+
+    private final String id;
+
+    Scenario(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Name on the command line, e.g. "long-conversation"
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Prefix of the scenario's operations in the report, e.g. "long_conversation"
+     */
+    public String operationPrefix() {
+        return id.replace('-', '_');
+    }
+
+    public static Scenario of(String id) {
+        for (Scenario scenario : values()) {
+            if (scenario.id.equals(id)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario '" + id + "' (new-conversation, long-conversation, history-browsing)");
+    }
+
+    /**
+     * "new-conversation:2,history-browsing:1" - scenarios with their weights
+     * (a scenario without a weight gets 1)
+     */
+    public static Map<Scenario, Integer> parseMix(String mix) {
+        Map<Scenario, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] idAndWeight = part.trim().split(":");
+            int weight = idAndWeight.length > 1 ? Integer.parseInt(idAndWeight[1]) : 1;
+            if (weight > 0) {
+                weights.put(of(idAndWeight[0]), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("No scenario in '" + mix + "'");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,195 @@
+package com.chat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stub LLM Server - A fake OpenAI-style chat completions API
+ *
+ * Runs in the load test's JVM on its own port (Reactor Netty, so thousands
+ * of slow answers in progress need no threads). The app under test is
+ * pointed at url() instead of OpenRouter, so no API quota is used.
+ *
+ * Every answer:
+ * 1. waits a latency drawn from the latency distribution
+ *    (for streams: the time to the first token)
+ * 2. fails with error-status for a share of error-rate calls, or
+ * 3. answers with completion-tokens tokens at tokens-per-second
+ *    - "stream": true  - one Server-Sent Event per token, usage, then [DONE]
+ *    - otherwise       - one JSON body once all tokens are "generated"
+ *
+ * Answers start with ANSWER_PREFIX, so the load test can tell real answers
+ * from the app's fallback messages (which come back as HTTP 200 too).
+ *
+ * POST /v1/chat/completions
+ */
+public class StubLlmServer implements AutoCloseable {
+
+    /**
+     * First word of every stub answer
+     */
+    public static final String ANSWER_PREFIX = "Stub";
+
+    /**
+     * Stub behaviour
+     *
+     * @param latency Time to the answer (or to the first token of a stream)
+     * @param errorRate Share of calls (0..1) that fail
+     * @param errorStatus HTTP status of failed calls (e.g. 503, 429, 500)
+     * @param completionTokens Tokens per answer
+     * @param tokensPerSecond Generation speed (0 = all tokens at once)
+     */
+    public record Settings(LatencyDistribution latency, double errorRate, int errorStatus,
+                           int completionTokens, double tokensPerSecond) {}
+
+    /**
+     * What the stub did so far
+     *
+     * @param promptTokens Estimated from the request size (4 bytes per token)
+     */
+    public record Stats(long requests, long streamRequests, long injectedErrors,
+                        long promptTokens, long completionTokens) {}
+
+    private final Settings settings;
+    private final DisposableServer server;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> tokens;
+    private final String answer;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder streamRequests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+
+    /**
+     * Starts the stub
+     *
+     * @param port Port to listen on (0 = any free port)
+     */
+    public StubLlmServer(Settings settings, int port) {
+        this.settings = settings;
+        this.tokens = new ArrayList<>(settings.completionTokens());
+        for (int i = 0; i < settings.completionTokens(); i++) {
+            tokens.add(i == 0 ? ANSWER_PREFIX : " " + WORDS[i % WORDS.length]);
+        }
+        this.answer = String.join("", tokens);
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(port)
+                .route(routes -> routes.post("/v1/chat/completions", this::handle))
+                .bindNow();
+    }
+
+    /**
+     * URL to use as ai.api.url
+     */
+    public String url() {
+        return "http://127.0.0.1:" + server.port() + "/v1/chat/completions";
+    }
+
+    public Stats stats() {
+        return new Stats(requests.sum(), streamRequests.sum(), injectedErrors.sum(),
+                promptTokens.sum(), completionTokens.sum());
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        return request.receive().aggregate().asByteArray().defaultIfEmpty(new byte[0]).flatMap(body -> {
+            requests.increment();
+            JsonNode json;
+            try {
+                json = objectMapper.readTree(body);
+            } catch (IOException e) {
+                return response.status(HttpResponseStatus.BAD_REQUEST).sendString(Mono.just("Invalid JSON")).then();
+            }
+            boolean stream = json.path("stream").asBoolean(false);
+            if (stream) {
+                streamRequests.increment();
+            }
+
+            Duration latency = Duration.ofMillis(Math.max(0, settings.latency().sampleMillis()));
+            if (ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+                injectedErrors.increment();
+                return Mono.delay(latency).then(response.status(settings.errorStatus())
+                        .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                        .sendString(Mono.just("{\"error\":{\"message\":\"Injected stub error\"}}"))
+                        .then());
+            }
+
+            long prompt = body.length / 4;
+            promptTokens.add(prompt);
+            return stream ? stream(response, latency, prompt) : complete(response, latency, prompt);
+        });
+    }
+
+    /**
+     * One JSON body after the latency plus the generation time of all tokens
+     */
+    private Mono<Void> complete(HttpServerResponse response, Duration latency, long prompt) {
+        int count = tokens.size();
+        String json = "{\"id\":\"chatcmpl-stub\",\"object\":\"chat.completion\",\"model\":\"stub\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + answer + "\"},"
+                + "\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":" + prompt + ",\"completion_tokens\":" + count
+                + ",\"total_tokens\":" + (prompt + count) + "}}";
+        return Mono.delay(latency.plus(tokenTime().multipliedBy(count)))
+                .doOnNext(tick -> completionTokens.add(count))
+                .then(response.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                        .sendString(Mono.just(json))
+                        .then());
+    }
+
+    /**
+     * One Server-Sent Event per token, then usage and [DONE]
+     */
+    private Mono<Void> stream(HttpServerResponse response, Duration latency, long prompt) {
+        int count = tokens.size();
+        Flux<String> deltas = Flux.fromIterable(tokens);
+        if (!tokenTime().isZero()) {
+            deltas = deltas.delayElements(tokenTime());
+        }
+        Flux<String> events = Mono.delay(latency).thenMany(deltas)
+                .doOnNext(token -> completionTokens.increment())
+                .map(token -> "data: {\"object\":\"chat.completion.chunk\",\"choices\":[{\"index\":0,"
+                        + "\"delta\":{\"content\":\"" + token + "\"}}]}\n\n")
+                .concatWith(Mono.just("data: {\"object\":\"chat.completion.chunk\",\"choices\":[],"
+                        + "\"usage\":{\"prompt_tokens\":" + prompt + ",\"completion_tokens\":" + count
+                        + ",\"total_tokens\":" + (prompt + count) + "}}\n\n"))
+                .concatWith(Mono.just("data: [DONE]\n\n"));
+        return response.header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream")
+                .sendString(events)
+                .then();
+    }
+
+    private Duration tokenTime() {
+        return settings.tokensPerSecond() > 0
+                ? Duration.ofNanos(Math.round(1_000_000_000 / settings.tokensPerSecond()))
+                : Duration.ZERO;
+    }
+
+    private static final String[] WORDS = {
+            "answer", "spring", "bean", "container", "service", "injects", "the", "a", "of", "request",
+            "response", "token", "stream", "model", "prompt", "context", "history", "message", "user", "chat"
+    };
+}
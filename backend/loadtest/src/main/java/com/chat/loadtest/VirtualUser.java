@@ -0,0 +1,183 @@
+package com.chat.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Virtual User - One simulated user running its scenario in a loop
+ *
+ * Closed loop: the next request is sent when the previous one is answered
+ * (plus a random think time), so throughput drops when the app slows down.
+ * Each user has its own account and conversations.
+ */
+public class VirtualUser implements Runnable {
+
+    private final int number;
+    private final Scenario scenario;
+    private final LoadTestConfig config;
+    private final ApiClient client;
+    private final Results results;
+    private final String prefix;
+
+    private String token;
+    private volatile long endNanos;
+
+    // LONG_CONVERSATION: the conversation in progress
+    private String conversationId;
+    private int turns;
+
+    // HISTORY_BROWSING: the imported conversations
+    private final List<Long> conversationIds = new ArrayList<>();
+
+    public VirtualUser(int number, Scenario scenario, LoadTestConfig config, ApiClient client, Results results) {
+        this.number = number;
+        this.scenario = scenario;
+        this.config = config;
+        this.client = client;
+        this.results = results;
+        this.prefix = scenario.operationPrefix();
+    }
+
+    public Scenario getScenario() {
+        return scenario;
+    }
+
+    /**
+     * Creates the account (and for history browsing, the conversations to browse)
+     */
+    public void setUp(String runId) {
+        token = client.registerAndLogin("lt" + runId + "u" + number);
+        if (scenario == Scenario.HISTORY_BROWSING) {
+            client.importConversations(seedConversations(), token);
+            for (JsonNode conversation : client.getJson("/api/conversations", token)) {
+                conversationIds.add(conversation.path("id").asLong());
+            }
+        }
+    }
+
+    /**
+     * Runs iterations until the end time (set with runUntil before starting)
+     */
+    public void runUntil(long endNanos) {
+        this.endNanos = endNanos;
+    }
+
+    @Override
+    public void run() {
+        while (System.nanoTime() < endNanos && !Thread.currentThread().isInterrupted()) {
+            switch (scenario) {
+                case NEW_CONVERSATION -> chat(null);
+                case LONG_CONVERSATION -> longConversationTurn();
+                case HISTORY_BROWSING -> browseHistory();
+            }
+            think();
+        }
+    }
+
+    private void longConversationTurn() {
+        if (conversationId == null || turns >= config.longTurns) {
+            conversationId = null;
+            turns = 0;
+        }
+        String id = chat(conversationId);
+        if (id != null) {
+            conversationId = id;
+            turns++;
+        }
+    }
+
+    /**
+     * One chat turn
+     *
+     * @return The conversation ID, or null if the turn failed
+     */
+    private String chat(String conversation) {
+        String message = "Question " + ThreadLocalRandom.current().nextInt(1_000_000)
+                + " from user " + number + ": how does dependency injection work?";
+        long start = System.nanoTime();
+        try {
+            ApiClient.ChatResult result = client.chat(config.chatEndpoint, message, conversation, token);
+            results.success(prefix + ".chat", System.nanoTime() - start);
+            if (result.firstTokenNanos() >= 0) {
+                results.success(prefix + ".chat_first_token", result.firstTokenNanos());
+            }
+            return result.conversationId();
+        } catch (ApiClient.CallFailedException e) {
+            results.failure(prefix + ".chat", e.getType());
+            return null;
+        }
+    }
+
+    /**
+     * Lists the conversations, opens one and scrolls back through its history
+     */
+    private void browseHistory() {
+        if (!timed("conversations", () -> client.getJson("/api/conversations", token))) {
+            return;
+        }
+        long id = conversationIds.get(ThreadLocalRandom.current().nextInt(conversationIds.size()));
+        String cursor = null;
+        for (int page = 0; page < config.historyPages; page++) {
+            String path = "/api/history/" + id + "?limit=" + config.historyPageSize
+                    + (cursor != null ? "&before=" + cursor : "");
+            JsonNode[] response = new JsonNode[1];
+            if (!timed("history_page", () -> response[0] = client.getJson(path, token))) {
+                return;
+            }
+            JsonNode next = response[0].path("nextCursor");
+            if (next.isNull() || next.isMissingNode()) {
+                return;
+            }
+            cursor = next.asText();
+        }
+    }
+
+    private boolean timed(String step, Runnable call) {
+        long start = System.nanoTime();
+        try {
+            call.run();
+            results.success(prefix + "." + step, System.nanoTime() - start);
+            return true;
+        } catch (ApiClient.CallFailedException e) {
+            results.failure(prefix + "." + step, e.getType());
+            return false;
+        }
+    }
+
+    private void think() {
+        long max = config.thinkTime.toMillis();
+        if (max > 0) {
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(max + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * NDJSON in the export format: history-seed-conversations conversations
+     * of history-seed-messages messages each
+     */
+    private String seedConversations() {
+        StringBuilder ndjson = new StringBuilder();
+        for (int c = 1; c <= config.historySeedConversations; c++) {
+            for (int m = 0; m < config.historySeedMessages; m++) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("conversationId", c);
+                line.put("conversationTitle", "Load test conversation " + c);
+                line.put("role", m % 2 == 0 ? "user" : "assistant");
+                line.put("content", (m % 2 == 0 ? "Question " : StubLlmServer.ANSWER_PREFIX + " answer ") + m
+                        + " about beans, services and dependency injection in a Spring application.");
+                line.put("createdAt", String.format("2024-01-01T%02d:%02d:%02d", m / 3600 % 24, m / 60 % 60, m % 60));
+                ndjson.append(client.json(line)).append('\n');
+            }
+        }
+        return ndjson.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package com.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * AI Router Properties - The AI endpoints (routes) chats can be sent to
+ *
+ * Read from ai.router.* in application.properties, e.g.:
+ *
+ * ai.router.routes[0].name=haiku
+ * ai.router.routes[0].url=https://openrouter.ai/api/v1/chat/completions
+ * ai.router.routes[0].key=${AI_API_KEY}
+ * ai.router.routes[0].model=anthropic/claude-3-haiku
+ * ai.router.routes[0].weight=2
+ * ai.router.routes[0].max-concurrent=50
+ *
+ * Without any routes, a single route "default" is made from ai.api.url,
+ * ai.api.key and ai.model.name (the old single-endpoint setup).
+ *
+ * @ConfigurationProperties - Spring fills the fields (lists need this, @Value can't do them)
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai.router")
+public class AIRouterProperties {
+
+    private List<Route> routes = new ArrayList<>();
+
+    /**
+     * Weight of the newest response time in the moving average (0..1, higher = reacts faster)
+     */
+    private double ewmaAlpha = 0.2;
+
+    /**
+     * Failures in a row before a route is skipped for a while
+     */
+    private int ejectAfterFailures = 3;
+
+    /**
+     * How long a failing route is skipped (it is still used if no other route is left)
+     */
+    private long ejectSeconds = 30;
+
+    /**
+     * Max concurrent calls of the "default" route (when no routes are configured)
+     */
+    private int defaultMaxConcurrent = 100;
+
+    @Data
+    public static class Route {
+
+        /**
+         * Name used in chat requests ("route": "haiku") and metrics
+         */
+        private String name;
+
+        private String url;
+
+        private String key;
+
+        private String model;
+
+        /**
+         * Share of traffic compared to other routes (2 = twice as much as 1, when equally fast)
+         */
+        private double weight = 1;
+
+        /**
+         * Max calls in progress on this route; when full, other routes are used
+         */
+        private int maxConcurrent = 100;
+    }
+}
@@ -0,0 +1,86 @@
+package com.chat.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Async Configuration
+ * 
+ * Background work (like summarizing long conversations) runs on its own
+ * small thread pool, so it never slows down chat requests.
+ * 
+ * Password hashing (BCrypt, ~100ms of CPU each) also has its own pool, so a
+ * burst of logins can't use up all request threads and CPU.
+ * 
+ * Declaring these pools switches off Spring Boot's own "applicationTaskExecutor",
+ * so it is declared here too: Spring MVC runs async requests (/api/chat/stream,
+ * /api/chat/reactive) on it. Without it, MVC falls back to a
+ * SimpleAsyncTaskExecutor that starts a new thread for every request.
+ * 
+ * @EnableAsync - Makes @Async methods run on a background thread
+ * @EnableScheduling - Runs @Scheduled methods (e.g. removing idle rate limit buckets)
+ */
+@Slf4j
+@Configuration
+@EnableAsync
+@EnableScheduling
+public class AsyncConfig {
+    
+    /**
+     * Thread pool for async Spring MVC requests (and @Async without a pool name)
+     * 
+     * Sized with the spring.task.execution.pool.* properties
+     */
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+    
+    /**
+     * Thread pool for conversation summaries
+     * 
+     * Bounded queue: if summaries pile up, new ones are skipped
+     * (the next chat turn triggers them again)
+     */
+    @Bean
+    public ThreadPoolTaskExecutor summaryExecutor(@Value("${ai.summary.threads:2}") int threads,
+                                                  @Value("${ai.summary.queue-size:100}") int queueSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueSize);
+        executor.setThreadNamePrefix("summarizer-");
+        executor.setRejectedExecutionHandler((task, pool) ->
+                log.warn("Summary queue is full - skipping summarization for now"));
+        return executor;
+    }
+    
+    /**
+     * Thread pool for BCrypt (login and registration)
+     * 
+     * Keep threads at or below the number of CPUs. When the queue is full,
+     * new hashing tasks are rejected right away (login answers 429).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashExecutor(@Value("${auth.hash.threads:2}") int threads,
+                                                       @Value("${auth.hash.queue-size:20}") int queueSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueSize);
+        executor.setThreadNamePrefix("password-hash-");
+        // Default policy: throw TaskRejectedException
+        return executor;
+    }
+}
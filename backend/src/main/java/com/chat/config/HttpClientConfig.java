@@ -0,0 +1,105 @@
+package com.chat.config;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * HTTP Client Configuration - One tuned connection pool for all outgoing calls
+ *
+ * Every WebClient.Builder that Spring injects (AIService, ExternalAPIService)
+ * uses the connector defined here, so all upstream calls share one
+ * ConnectionProvider. It keeps a separate pool per remote host, so the AI API
+ * and the weather API never take connections from each other.
+ *
+ * Why not the default pool: Spring's WebClient uses a shared "webflux" pool
+ * with 500 connections per host, up to 1000 waiting requests and a 45s wait
+ * for a free connection - but idle connections are never closed (a proxy or
+ * the AI API may already have dropped them, so the next call fails with
+ * "connection reset"), connections live forever (DNS changes are missed),
+ * there is no connect or response timeout and no pool metrics. This pool
+ * keeps the same 500/1000 limits, waits at most ai.api.timeout, and adds all
+ * of the above. (A bare HttpClient.create() would get only max(CPUs, 8) * 2
+ * connections, e.g. 16 on a small server.)
+ *
+ * Pool gauges (per host) are exported through Micrometer, e.g.
+ * /actuator/metrics/reactor.netty.connection.provider.active.connections
+ *
+ * @Configuration - Spring reads this when the application starts
+ */
+@Slf4j
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Pool name - shows up as the "name" tag of the pool metrics
+     */
+    private static final String POOL_NAME = "upstream";
+
+    /**
+     * Connection pool shared by all upstream calls
+     *
+     * @param maxConnections Max open connections per remote host
+     * @param pendingAcquireMax Max requests waiting for a connection per host (then they fail fast)
+     * @param maxIdleMs Close connections unused this long (before the server or a proxy drops them)
+     * @param maxLifeMs Close connections after this long, so DNS changes are picked up
+     * @param pendingAcquireTimeoutMs Max wait for a free connection (defaults to ai.api.timeout)
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider upstreamConnectionProvider(
+            @Value("${upstream.http.max-connections:500}") int maxConnections,
+            @Value("${upstream.http.pending-acquire-max:1000}") int pendingAcquireMax,
+            @Value("${upstream.http.max-idle-ms:30000}") long maxIdleMs,
+            @Value("${upstream.http.max-life-ms:300000}") long maxLifeMs,
+            @Value("${upstream.http.pending-acquire-timeout-ms:${ai.api.timeout:30000}}") long pendingAcquireTimeoutMs) {
+        return ConnectionProvider.builder(POOL_NAME)
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeMs))
+                // Close idle and expired connections even when no request comes in
+                .evictInBackground(Duration.ofMillis(Math.max(1000, maxIdleMs / 2)))
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * Connector used by every WebClient.Builder in the application
+     *
+     * @param connectTimeoutMs Max time to open a TCP connection
+     * @param responseTimeoutMs Max silence while waiting for (more of) a response.
+     *                          For streamed answers this applies between chunks.
+     * @param http2 true to offer HTTP/2 (negotiated over TLS, falls back to HTTP/1.1)
+     */
+    @Bean
+    public ClientHttpConnector upstreamHttpConnector(
+            ConnectionProvider upstreamConnectionProvider,
+            @Value("${upstream.http.connect-timeout-ms:5000}") int connectTimeoutMs,
+            @Value("${ai.api.timeout:30000}") long responseTimeoutMs,
+            @Value("${upstream.http.http2:false}") boolean http2) {
+        HttpClient httpClient = HttpClient.create(upstreamConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .keepAlive(true);
+
+        if (http2) {
+            // Many requests share one connection; plain http:// URLs keep using HTTP/1.1
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        log.info("Upstream HTTP client: connect timeout {}ms, response timeout {}ms, HTTP/2 {}",
+                connectTimeoutMs, responseTimeoutMs, http2 ? "offered" : "off");
+        return new ReactorClientHttpConnector(httpClient);
+    }
+}
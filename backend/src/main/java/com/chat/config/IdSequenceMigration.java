@@ -0,0 +1,85 @@
+package com.chat.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * ID Sequence Migration - Moves old databases from IDENTITY columns to sequences
+ *
+ * Conversations and chat messages used to get their IDs from IDENTITY
+ * (auto-increment) columns. They now use the sequences conversations_seq and
+ * chat_messages_seq, so inserts can be batched.
+ *
+ * On an existing database (e.g. the file database in production) Hibernate
+ * creates those sequences starting at 1, and the new IDs would clash with the
+ * rows that are already there. This class runs once at startup, after
+ * Hibernate has updated the schema but before any request is served, and moves
+ * each sequence past the highest ID in its table.
+ *
+ * Nothing happens on a new or already migrated database.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class IdSequenceMigration {
+
+    // Must match allocationSize in the entities' @SequenceGenerator
+    private static final int ALLOCATION_SIZE = 50;
+
+    // table -> sequence
+    private static final List<String[]> SEQUENCES = List.of(
+            new String[]{"conversations", "conversations_seq"},
+            new String[]{"chat_messages", "chat_messages_seq"}
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public IdSequenceMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        for (String[] entry : SEQUENCES) {
+            try {
+                migrateSequence(entry[0], entry[1]);
+            } catch (DataAccessException e) {
+                // Don't stop the application - but new inserts may fail until this is fixed
+                log.error("Could not check sequence {} against table {}: {}", entry[1], entry[0], e.getMessage());
+            }
+        }
+    }
+
+    private void migrateSequence(String table, String sequence) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        if (maxId == null) {
+            return; // Empty table
+        }
+
+        // H2: BASE_VALUE is the next value the sequence will return
+        List<Long> nextValue = jdbcTemplate.queryForList(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = UPPER(?)",
+                Long.class, sequence);
+
+        // With the pooled optimizer a sequence value can be the end of a block
+        // of ALLOCATION_SIZE IDs, so keep a full block of distance
+        long safeStart = maxId + ALLOCATION_SIZE + 1;
+        if (!nextValue.isEmpty() && nextValue.get(0) >= safeStart) {
+            return; // Already migrated
+        }
+
+        jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + safeStart);
+        log.info("Moved sequence {} to {} (highest existing {}.id is {})", sequence, safeStart, table, maxId);
+    }
+}
@@ -0,0 +1,101 @@
+package com.chat.config;
+
+import com.chat.service.RateLimiter;
+import com.chat.service.TokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate Limit Filter
+ *
+ * Runs after TokenAuthenticationFilter, so logged-in users are limited by
+ * their user ID (the same limit on every device) and everyone else by IP.
+ *
+ * - /api/chat/**: chat limit per user/IP, plus one global chat limit
+ * - /api/history/** and GET /api/conversations/**: history limit
+ * - /api/auth/**: auth limit per IP
+ *
+ * Over the limit: 429 with Retry-After (seconds until the next request is allowed).
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final boolean trustForwardedFor;
+
+    public RateLimitFilter(RateLimiter rateLimiter, boolean trustForwardedFor) {
+        this.rateLimiter = rateLimiter;
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RateLimiter.Group group = groupOf(request);
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = rateLimiter.tryAcquire(group, clientKey(request, group));
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"status\":\"error\",\"message\":\"Too many requests, please slow down\"}");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Endpoint group of a request, or null if it is not limited
+     */
+    private static RateLimiter.Group groupOf(HttpServletRequest request) {
+        if ("OPTIONS".equals(request.getMethod())) {
+            return null; // CORS preflight
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith("/api/chat")) {
+            return RateLimiter.Group.CHAT;
+        }
+        if (path.startsWith("/api/auth/")) {
+            return RateLimiter.Group.AUTH;
+        }
+        if (path.startsWith("/api/history/")
+                || ("GET".equals(request.getMethod()) && path.startsWith("/api/conversations"))) {
+            return RateLimiter.Group.HISTORY;
+        }
+        return null;
+    }
+
+    /**
+     * "user:<id>" for requests with a valid token, otherwise "ip:<address>"
+     */
+    private String clientKey(HttpServletRequest request, RateLimiter.Group group) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (group != RateLimiter.Group.AUTH
+                && authentication != null && authentication.getPrincipal() instanceof TokenService.Claims claims) {
+            return "user:" + claims.userId();
+        }
+        if (trustForwardedFor) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isBlank()) {
+                int comma = forwarded.indexOf(',');
+                return "ip:" + (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
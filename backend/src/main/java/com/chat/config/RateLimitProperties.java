@@ -0,0 +1,69 @@
+package com.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rate Limit Properties - How many requests each user (or IP) may send
+ *
+ * Read from rate-limit.* in application.properties. Every limit is a token
+ * bucket: up to "capacity" requests at once, refilled at "per-minute"
+ * requests per minute. capacity=0 turns a limit off.
+ *
+ * @ConfigurationProperties - Spring fills the fields from rate-limit.*
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * POST /api/chat, /api/chat/reactive, /api/chat/stream - per user or IP
+     */
+    private Limit chat = new Limit(10, 30);
+
+    /**
+     * All chat requests together (protects the AI API quota)
+     */
+    private Limit chatGlobal = new Limit(200, 3000);
+
+    /**
+     * /api/history/** and GET /api/conversations/** - per user or IP
+     */
+    private Limit history = new Limit(60, 600);
+
+    /**
+     * /api/auth/** - per IP (no token yet at login)
+     */
+    private Limit auth = new Limit(10, 20);
+
+    /**
+     * Max buckets kept per endpoint group; keys beyond this share one bucket
+     */
+    private int maxKeys = 1_000_000;
+
+    /**
+     * Use the first X-Forwarded-For address as the client IP.
+     * Only turn on behind a proxy that sets it (otherwise clients can fake it).
+     */
+    private boolean trustForwardedFor = false;
+
+    @Data
+    public static class Limit {
+
+        private long capacity;
+
+        private double perMinute;
+
+        public Limit() {
+        }
+
+        public Limit(long capacity, double perMinute) {
+            this.capacity = capacity;
+            this.perMinute = perMinute;
+        }
+    }
+}
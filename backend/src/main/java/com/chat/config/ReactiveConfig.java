@@ -0,0 +1,35 @@
+package com.chat.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive Configuration
+ * 
+ * JPA (database) calls are blocking - they must never run on the WebClient
+ * event loop threads. The reactive chat path hands them to this scheduler instead.
+ * 
+ * The scheduler is bounded: it has about as many threads as the database
+ * connection pool, so thousands of waiting chats only queue small tasks here
+ * instead of creating thousands of threads.
+ * 
+ * @Configuration - Spring reads this when the application starts
+ */
+@Configuration
+public class ReactiveConfig {
+    
+    /**
+     * Scheduler for blocking database work in reactive pipelines
+     * 
+     * @param threads Max threads (match spring.datasource.hikari.maximum-pool-size)
+     * @param queueSize Max tasks waiting for a thread before new ones are rejected
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler databaseScheduler(@Value("${chat.db.scheduler.threads:10}") int threads,
+                                       @Value("${chat.db.scheduler.queue-size:10000}") int queueSize) {
+        return Schedulers.newBoundedElastic(threads, queueSize, "chat-db");
+    }
+}
@@ -0,0 +1,146 @@
+package com.chat.config;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recent Spans Exporter - Keeps the latest spans in memory (and logs them) for local testing
+ *
+ * No tracing backend needed: GET /actuator/traces lists the latest traces,
+ * /actuator/traces/{traceId} shows one trace with the time of every span.
+ * With tracing.local-exporter.log=true every span is also written to the log.
+ *
+ * Only created with tracing.local-exporter.enabled=true (off in production -
+ * use OTLP there). Memory is bounded by tracing.local-exporter.max-spans.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "traces")
+@ConditionalOnProperty(name = "tracing.local-exporter.enabled", havingValue = "true")
+public class RecentSpansExporter implements SpanExporter {
+
+    /**
+     * One span of a trace, times relative to the start of the trace
+     */
+    public record SpanView(String name, String spanId, String parentSpanId, long startMs, double durationMs,
+                           String status, Map<String, String> attributes) {}
+
+    /**
+     * One trace, spans in start order
+     */
+    public record TraceView(String traceId, String name, double durationMs, List<SpanView> spans) {}
+
+    private final Deque<SpanData> spans = new ArrayDeque<>(); // Guarded by "this"
+    private final int maxSpans;
+    private final boolean logSpans;
+
+    public RecentSpansExporter(@Value("${tracing.local-exporter.max-spans:2000}") int maxSpans,
+                               @Value("${tracing.local-exporter.log:false}") boolean logSpans) {
+        this.maxSpans = maxSpans;
+        this.logSpans = logSpans;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> batch) {
+        synchronized (this) {
+            for (SpanData span : batch) {
+                if (spans.size() >= maxSpans) {
+                    spans.removeFirst();
+                }
+                spans.addLast(span);
+            }
+        }
+        if (logSpans) {
+            for (SpanData span : batch) {
+                log.info("Span {} trace={} span={} parent={} {}ms {}", span.getName(), span.getTraceId(),
+                        span.getSpanId(), span.getParentSpanId(), millis(span.getEndEpochNanos() - span.getStartEpochNanos()),
+                        span.getAttributes().asMap());
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * GET /actuator/traces - the latest traces, newest first
+     */
+    @ReadOperation
+    public List<TraceView> traces() {
+        Map<String, List<SpanData>> byTrace = new LinkedHashMap<>();
+        for (SpanData span : snapshot()) {
+            byTrace.computeIfAbsent(span.getTraceId(), id -> new ArrayList<>()).add(span);
+        }
+        List<TraceView> traces = new ArrayList<>();
+        byTrace.forEach((traceId, traceSpans) -> traces.add(toView(traceId, traceSpans)));
+        Collections.reverse(traces); // Spans arrive in about the order they end
+        return traces.subList(0, Math.min(50, traces.size()));
+    }
+
+    /**
+     * GET /actuator/traces/{traceId} - one trace, or null (404) if it is no longer kept
+     */
+    @ReadOperation
+    public TraceView trace(@Selector String traceId) {
+        List<SpanData> traceSpans = snapshot().stream().filter(span -> span.getTraceId().equals(traceId)).toList();
+        return traceSpans.isEmpty() ? null : toView(traceId, traceSpans);
+    }
+
+    private synchronized List<SpanData> snapshot() {
+        return new ArrayList<>(spans);
+    }
+
+    private static TraceView toView(String traceId, List<SpanData> traceSpans) {
+        List<SpanData> sorted = new ArrayList<>(traceSpans);
+        sorted.sort(Comparator.comparingLong(SpanData::getStartEpochNanos));
+        long start = sorted.get(0).getStartEpochNanos();
+        long end = sorted.stream().mapToLong(SpanData::getEndEpochNanos).max().orElse(start);
+
+        // The root span (no parent) names the trace, e.g. "http post /api/chat"
+        String name = sorted.stream().filter(span -> !span.getParentSpanContext().isValid())
+                .map(SpanData::getName).findFirst().orElse(sorted.get(0).getName());
+
+        List<SpanView> views = new ArrayList<>();
+        for (SpanData span : sorted) {
+            Map<String, String> attributes = new LinkedHashMap<>();
+            span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+            views.add(new SpanView(span.getName(), span.getSpanId(),
+                    span.getParentSpanContext().isValid() ? span.getParentSpanId() : null,
+                    TimeUnit.NANOSECONDS.toMillis(span.getStartEpochNanos() - start),
+                    millis(span.getEndEpochNanos() - span.getStartEpochNanos()),
+                    span.getStatus().getStatusCode().name(), attributes));
+        }
+        return new TraceView(traceId, name, millis(end - start), views);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0; // 2 decimals
+    }
+}
@@ -1,6 +1,11 @@
 package com.chat.config;
 
+import com.chat.service.RateLimiter;
+import com.chat.service.TokenService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -9,6 +14,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfigurationSource;
 
 /**
@@ -16,8 +22,17 @@ import org.springframework.web.cors.CorsConfigurationSource;
  * 
  * Configures Spring Security for authentication
  * 
- * For now, we're keeping it simple - allowing all API endpoints
- * In production, you'd add proper authentication (JWT tokens, etc.)
+ * Login returns a signed token (see TokenService). Requests send it as
+ * "Authorization: Bearer <token>" and TokenAuthenticationFilter checks it
+ * without touching the database.
+ * 
+ * By default all API endpoints are still open (requests without a token
+ * use the guest user). Set auth.required=true to require a token - for the
+ * API and for the actuator endpoints except health (metrics, prometheus and
+ * traces show routes, users and request details).
+ * 
+ * Chat, history and auth requests are rate limited per user or IP
+ * (RateLimitFilter, limits in rate-limit.*).
  * 
  * @Configuration - Marks this as configuration class
  * @EnableWebSecurity - Enables Spring Security
@@ -29,17 +44,33 @@ public class SecurityConfig {
     @Autowired
     private CorsConfigurationSource corsConfigurationSource;
     
+    @Autowired
+    private TokenService tokenService;
+    
+    @Autowired
+    private RateLimiter rateLimiter;
+    
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+    
+    // true = /api/** and /actuator/** need a login token (except /api/auth/**, /api/health, /actuator/health)
+    @Value("${auth.required:false}")
+    private boolean authRequired;
+    
     /**
      * Password Encoder Bean
      * 
      * BCrypt is a strong password hashing algorithm
      * Spring Boot automatically uses this to encrypt passwords
      * 
+     * Strength (cost) = log2 of the rounds: every +1 doubles the time.
+     * Stored hashes are upgraded to a new strength when users log in.
+     * 
      * @Bean - Spring creates this object automatically
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
     
     /**
@@ -47,8 +78,7 @@ public class SecurityConfig {
      * 
      * Configures which endpoints are public and which require authentication
      * 
-     * For learning purposes, we're allowing all endpoints
-     * In production, you'd protect endpoints with authentication
+     * With auth.required=false (default) all endpoints are allowed
      */
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -59,12 +89,28 @@ public class SecurityConfig {
             // Disable CSRF for API (we'll enable it properly in production)
             .csrf(csrf -> csrf.disable())
             
-            // Allow all endpoints (for learning - no authentication required)
-            .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/api/**").permitAll()
-                .requestMatchers("/h2-console/**").permitAll() // H2 database console
-                .anyRequest().permitAll()
-            )
+            // Check "Authorization: Bearer" tokens (no database work per request)
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService), UsernamePasswordAuthenticationFilter.class)
+            
+            // Then limit requests per user (known from the token) or IP -> 429
+            .addFilterAfter(new RateLimitFilter(rateLimiter, rateLimitProperties.isTrustForwardedFor()),
+                    TokenAuthenticationFilter.class)
+            
+            .authorizeHttpRequests(auth -> {
+                auth.requestMatchers("/api/auth/**", "/api/health").permitAll()
+                    .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll();
+                if (authRequired) {
+                    auth.requestMatchers("/api/**").authenticated()
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).authenticated();
+                }
+                auth.requestMatchers("/api/**").permitAll()
+                    .requestMatchers("/h2-console/**").permitAll() // H2 database console
+                    .anyRequest().permitAll();
+            })
+            
+            // Missing token on a protected endpoint -> 401 (not a login page)
+            .exceptionHandling(exceptions -> exceptions.authenticationEntryPoint(
+                (request, response, e) -> response.sendError(401, "Login required")))
             
             // Allow H2 console frames (using modern API)
             .headers(headers -> headers.frameOptions(frameOptions -> frameOptions.sameOrigin()))
@@ -0,0 +1,77 @@
+package com.chat.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+/**
+ * Tracing Configuration
+ *
+ * A chat request becomes one trace (Micrometer Tracing with OpenTelemetry):
+ *
+ * http post /api/chat                      - created for every request (Spring MVC)
+ *   chat conversation_lookup               - ChatService phases (chat.phase)
+ *     ConversationRepository.findByIdAndUser - every repository call (chat.repository)
+ *   chat history_load / user_message_save
+ *   chat ai_call
+ *     http post                            - the WebClient call; its "traceparent"
+ *                                            header carries the trace to the AI API
+ *   chat assistant_save / title_update
+ *
+ * Spans go to every SpanExporter bean: RecentSpansExporter (tracing.local-exporter.*)
+ * and OTLP when management.otlp.tracing.endpoint is set.
+ * management.tracing.sampling.probability decides which share of requests is traced.
+ *
+ * @Configuration - Spring reads this when the application starts
+ */
+@Configuration
+public class TracingConfig {
+
+    /**
+     * Wraps every Spring Data repository method in a "chat.repository" observation
+     *
+     * Repository calls that flush (save, saveAndFlush, queries) include their
+     * Hibernate flush, so slow inserts show up on the call that caused them.
+     *
+     * static - post processors are created before the other beans
+     */
+    @Bean
+    public static BeanPostProcessor repositoryTracing(ObjectProvider<ObservationRegistry> observationRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(repositoryObservation(
+                                    observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP),
+                                    repositoryInformation.getRepositoryInterface().getSimpleName()))));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static MethodInterceptor repositoryObservation(ObservationRegistry observationRegistry, String repository) {
+        return invocation -> {
+            String method = invocation.getMethod().getName();
+            Observation observation = Observation.createNotStarted("chat.repository", observationRegistry)
+                    .contextualName(repository + "." + method)
+                    .lowCardinalityKeyValue("repository", repository)
+                    .lowCardinalityKeyValue("method", method)
+                    .start();
+            try (Observation.Scope scope = observation.openScope()) {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                observation.error(e);
+                throw e;
+            } finally {
+                observation.stop();
+            }
+        };
+    }
+}
@@ -3,10 +3,12 @@ package com.chat.controller;
 import com.chat.model.LoginRequest;
 import com.chat.model.User;
 import com.chat.model.UserRegistrationRequest;
+import com.chat.service.TokenService;
 import com.chat.service.UserService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -15,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Authentication Controller
@@ -27,10 +30,12 @@ import java.util.Map;
 public class AuthController {
     
     private final UserService userService;
+    private final TokenService tokenService;
     
     @Autowired
-    public AuthController(UserService userService) {
+    public AuthController(UserService userService, TokenService tokenService) {
         this.userService = userService;
+        this.tokenService = tokenService;
     }
     
     /**
@@ -60,6 +65,8 @@ public class AuthController {
             response.put("status", "error");
             response.put("message", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
         } catch (Exception e) {
             log.error("Registration error: {}", e.getMessage());
             Map<String, Object> response = new HashMap<>();
@@ -72,6 +79,8 @@ public class AuthController {
     /**
      * Login user
      * POST /api/auth/login
+     * 
+     * Returns a "token" - send it on later requests as "Authorization: Bearer <token>"
      */
     @PostMapping("/login")
     public ResponseEntity<Map<String, Object>> login(@Valid @RequestBody LoginRequest request) {
@@ -85,6 +94,8 @@ public class AuthController {
                 response.put("userId", user.getId());
                 response.put("username", user.getUsername());
                 response.put("email", user.getEmail());
+                response.put("token", tokenService.issue(user));
+                response.put("expiresIn", tokenService.getTtlSeconds());
                 
                 log.info("User logged in: {}", user.getUsername());
                 return ResponseEntity.ok(response);
@@ -95,6 +106,8 @@ public class AuthController {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
             }
             
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
         } catch (Exception e) {
             log.error("Login error: {}", e.getMessage());
             Map<String, Object> response = new HashMap<>();
@@ -104,5 +117,17 @@ public class AuthController {
         }
     }
     
+    /**
+     * Password hashing is busy (see PasswordHashingService) - answer fast instead of queueing more
+     */
+    private ResponseEntity<Map<String, Object>> tooManyRequests() {
+        log.warn("Password hashing queue is full - rejecting request");
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", "Too many login attempts right now, please try again");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response);
+    }
 }
 
@@ -1,16 +1,32 @@
 package com.chat.controller;
 
 import com.chat.model.*;
+import com.chat.service.AIRouter;
 import com.chat.service.ChatService;
+import com.chat.service.ExportService;
 import com.chat.service.ExternalAPIService;
+import com.chat.service.ImportService;
+import com.chat.service.ImportStoppedException;
+import com.chat.service.TokenService;
 import com.chat.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -42,15 +58,31 @@ public class ChatController {
     private final ChatService chatService;
     private final ExternalAPIService externalAPIService;
     private final UserService userService;
+    private final ExportService exportService;
+    private final ImportService importService;
+    private final AIRouter aiRouter;
+    
+    // Exporting every user's chats is off unless explicitly enabled
+    @Value("${chat.export.all-users.enabled:false}")
+    private boolean exportAllUsersEnabled;
+    
+    // History page sizes (?limit=)
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
     
     /**
      * Constructor - Spring automatically injects services
      */
     @Autowired
-    public ChatController(ChatService chatService, ExternalAPIService externalAPIService, UserService userService) {
+    public ChatController(ChatService chatService, ExternalAPIService externalAPIService,
+                          UserService userService, ExportService exportService,
+                          ImportService importService, AIRouter aiRouter) {
         this.chatService = chatService;
         this.externalAPIService = externalAPIService;
         this.userService = userService;
+        this.exportService = exportService;
+        this.importService = importService;
+        this.aiRouter = aiRouter;
     }
     
     /**
@@ -69,6 +101,18 @@ public class ChatController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * AI Routes
+     * GET /api/routes
+     * 
+     * Lists the AI routes a chat request can choose with "route",
+     * with their current load and average response time
+     */
+    @GetMapping("/routes")
+    public ResponseEntity<List<AIRouter.RouteStatus>> getRoutes() {
+        return ResponseEntity.ok(aiRouter.status());
+    }
+    
     /**
      * Chat Endpoint (Updated with Database Support)
      * POST /api/chat
@@ -105,26 +149,23 @@ public class ChatController {
                 );
                 return ResponseEntity.badRequest().body(errorResponse);
             }
+            if (isUnknownRoute(request.getRoute())) {
+                return ResponseEntity.badRequest().body(unknownRouteResponse(request.getRoute()));
+            }
             
             // For now, create/get a default "guest" user for backward compatibility
             // In production, you'd get user from authentication token
-            User user = getOrCreateGuestUser();
+            User user = getCurrentUser();
             
             // Parse conversation ID (can be String or Long)
-            Long conversationId = null;
-            if (request.getConversationId() != null && !request.getConversationId().isEmpty()) {
-                try {
-                    conversationId = Long.parseLong(request.getConversationId());
-                } catch (NumberFormatException e) {
-                    log.warn("Invalid conversation ID format: {}", request.getConversationId());
-                }
-            }
+            Long conversationId = parseConversationId(request.getConversationId());
             
             // Process message through service (now saves to database!)
             ChatResponse response = chatService.processMessage(
                     request.getMessage(),
                     conversationId,
-                    user
+                    user,
+                    request.getRoute()
             );
             
             // Return response
@@ -147,18 +188,123 @@ public class ChatController {
     }
     
     /**
-     * Get Conversation History (Updated - Now with Timestamps!)
-     * GET /api/history/{conversationId}
+     * Reactive Chat Endpoint
+     * POST /api/chat/reactive
+     * 
+     * Same request and response as /api/chat, but the Tomcat thread is released
+     * while the AI is thinking - Spring completes the response when the Mono finishes.
+     * This lets a few threads serve many slow AI calls at once.
+     */
+    @PostMapping("/chat/reactive")
+    public Mono<ResponseEntity<ChatResponse>> chatReactive(@RequestBody ChatRequest request) {
+        log.info("Received reactive chat request: {}", request.getMessage());
+        
+        // Validate request
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            return Mono.just(ResponseEntity.badRequest().body(new ChatResponse(
+                    null,
+                    "",
+                    "error",
+                    "Message cannot be empty"
+            )));
+        }
+        if (isUnknownRoute(request.getRoute())) {
+            return Mono.just(ResponseEntity.badRequest().body(unknownRouteResponse(request.getRoute())));
+        }
+        
+        return Mono.fromCallable(this::getCurrentUser)
+                .flatMap(user -> chatService.processMessageReactive(
+                        request.getMessage(),
+                        parseConversationId(request.getConversationId()),
+                        user,
+                        request.getRoute()
+                ))
+                .map(response -> "success".equals(response.getStatus())
+                        ? ResponseEntity.ok(response)
+                        : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response))
+                .onErrorResume(e -> {
+                    log.error("Error in reactive chat endpoint: {}", e.getMessage(), e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ChatResponse(
+                            null,
+                            "",
+                            "error",
+                            "Internal server error: " + e.getMessage()
+                    )));
+                });
+    }
+    
+    /**
+     * Streaming Chat Endpoint
+     * POST /api/chat/stream
+     * 
+     * Same request body as /api/chat, but the answer is sent as Server-Sent Events
+     * while the AI is still generating it, so the user sees the first words right away.
+     * 
+     * Events:
+     * event: conversation   data: {"conversationId":"123"}
+     * event: delta          data: {"content":"Hel"}
+     * event: delta          data: {"content":"lo!"}
+     * event: done           data: {}
      * 
-     * Returns all messages in a conversation with timestamps
+     * If the client disconnects, the text received so far is still saved.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, String>>> chatStream(@RequestBody ChatRequest request) {
+        try {
+            log.info("Received streaming chat request: {}", request.getMessage());
+            
+            if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+                return Flux.just(ChatService.streamEvent("error", Map.of("error", "Message cannot be empty")));
+            }
+            if (isUnknownRoute(request.getRoute())) {
+                return Flux.just(ChatService.streamEvent("error", Map.of("error", "Unknown route: " + request.getRoute())));
+            }
+            
+            User user = getCurrentUser();
+            Long conversationId = parseConversationId(request.getConversationId());
+            return chatService.streamMessage(request.getMessage(), conversationId, user, request.getRoute());
+            
+        } catch (Exception e) {
+            log.error("Error in streaming chat endpoint: {}", e.getMessage(), e);
+            return Flux.just(ChatService.streamEvent("error", Map.of("error", "Internal server error: " + e.getMessage())));
+        }
+    }
+    
+    /**
+     * Get Conversation History (Updated - Now with Timestamps and Pagination!)
+     * GET /api/history/{conversationId}?limit=50
+     * GET /api/history/{conversationId}?before={messageId}&limit=50
+     * GET /api/history/{conversationId}?after={messageId}&limit=50
+     * 
+     * With paging parameters, returns one page of messages (see MessagePage):
+     * { "messages": [...], "nextCursor": 51, "prevCursor": null }
+     * Pass nextCursor as ?before= to load older messages when the user scrolls up.
+     * 
+     * Without parameters, returns all messages as a plain list (old clients)
      */
     @GetMapping("/history/{conversationId}")
-    public ResponseEntity<List<ChatMessage>> getHistory(@PathVariable Long conversationId) {
+    public ResponseEntity<?> getHistory(@PathVariable Long conversationId,
+                                        @RequestParam(required = false) Long before,
+                                        @RequestParam(required = false) Long after,
+                                        @RequestParam(required = false) Integer limit) {
         try {
             log.info("Getting history for conversation: {}", conversationId);
-            User user = getOrCreateGuestUser();
-            List<ChatMessage> history = chatService.getConversationHistory(conversationId, user);
-            return ResponseEntity.ok(history);
+            User user = getCurrentUser();
+            
+            if (before == null && after == null && limit == null) {
+                List<ChatMessage> history = chatService.getConversationHistory(conversationId, user);
+                return ResponseEntity.ok(history);
+            }
+            
+            int pageSize = Math.max(1, Math.min(limit != null ? limit : DEFAULT_PAGE_SIZE, MAX_PAGE_SIZE));
+            MessagePage page = chatService.getConversationHistoryPage(conversationId, user, before, after, pageSize);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("Bad history request: {}", e.getMessage());
+            Map<String, String> response = new HashMap<>();
+            response.put("status", "error");
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
             log.error("Error getting history: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -174,7 +320,7 @@ public class ChatController {
     @GetMapping("/conversations")
     public ResponseEntity<List<Conversation>> getConversations() {
         try {
-            User user = getOrCreateGuestUser();
+            User user = getCurrentUser();
             List<Conversation> conversations = chatService.getUserConversations(user);
             return ResponseEntity.ok(conversations);
         } catch (Exception e) {
@@ -183,6 +329,76 @@ public class ChatController {
         }
     }
     
+    /**
+     * Export Conversations (NDJSON)
+     * GET /api/conversations/export
+     * GET /api/conversations/export?allUsers=true   (needs chat.export.all-users.enabled=true)
+     * 
+     * Streams every message as one JSON line, for compliance archives.
+     * The response is written while reading from the database, so even
+     * millions of messages use a small, constant amount of memory.
+     */
+    @GetMapping("/conversations/export")
+    public void exportConversations(@RequestParam(defaultValue = "false") boolean allUsers,
+                                    HttpServletResponse response) throws IOException {
+        if (allUsers && !exportAllUsersEnabled) {
+            response.sendError(HttpStatus.FORBIDDEN.value(), "Exporting all users is disabled");
+            return;
+        }
+        
+        User user = getCurrentUser();
+        
+        // Written synchronously on this request thread: a big archive can take
+        // longer than the async request timeout that StreamingResponseBody would have
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"conversations.ndjson\"");
+        exportService.exportMessages(user, allUsers, response.getOutputStream());
+    }
+    
+    /**
+     * Import Conversations (NDJSON)
+     * POST /api/conversations/import   (Content-Type: application/x-ndjson)
+     * 
+     * Accepts the export format - e.g. an archive from another chat system.
+     * Each source conversationId becomes a new conversation of the current user.
+     * 
+     * Response:
+     * {"status": "success", "imported": 1000000, "skipped": 0, "conversations": 5000, "rowsPerSecond": 40000}
+     * 
+     * A line that isn't JSON stops the import; the valid lines before it are saved:
+     * 400 {"status": "error", "message": "Invalid JSON at line 7: ...", "imported": 6, "skipped": 0, "conversations": 1}
+     */
+    @PostMapping(value = "/conversations/import", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Map<String, Object>> importConversations(HttpServletRequest request) {
+        User user = getCurrentUser();
+        Map<String, Object> body = new HashMap<>();
+        try {
+            ImportService.ImportResult result = importService.importMessages(user, request.getInputStream());
+            body.put("status", "success");
+            body.put("imported", result.imported());
+            body.put("skipped", result.skipped());
+            body.put("conversations", result.conversations());
+            body.put("rowsPerSecond", result.rowsPerSecond());
+            return ResponseEntity.ok(body);
+        } catch (ImportStoppedException e) {
+            // Every valid line before the broken one is saved - tell the client how many
+            ImportService.ImportResult saved = e.getResult();
+            log.warn("Import stopped after {} messages: {}", saved.imported(), e.getMessage());
+            body.put("status", "error");
+            body.put("message", e.getMessage());
+            body.put("imported", saved.imported());
+            body.put("skipped", saved.skipped());
+            body.put("conversations", saved.conversations());
+            return ResponseEntity.badRequest().body(body);
+        } catch (IOException e) {
+            log.error("Error importing conversations: {}", e.getMessage());
+            body.put("status", "error");
+            body.put("message", "Could not read the import");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(body);
+        }
+    }
+    
     /**
      * Create New Conversation
      * POST /api/conversations
@@ -192,7 +408,7 @@ public class ChatController {
     @PostMapping("/conversations")
     public ResponseEntity<Conversation> createConversation(@RequestBody Map<String, String> request) {
         try {
-            User user = getOrCreateGuestUser();
+            User user = getCurrentUser();
             String title = request.get("title");
             Conversation conversation = chatService.createConversation(user, title);
             return ResponseEntity.status(HttpStatus.CREATED).body(conversation);
@@ -212,7 +428,7 @@ public class ChatController {
     public ResponseEntity<Map<String, String>> deleteConversation(@PathVariable Long conversationId) {
         try {
             log.info("Deleting conversation: {}", conversationId);
-            User user = getOrCreateGuestUser();
+            User user = getCurrentUser();
             chatService.deleteConversation(conversationId, user);
             Map<String, String> response = new HashMap<>();
             response.put("status", "success");
@@ -248,22 +464,51 @@ public class ChatController {
     }
     
     /**
-     * Helper method - Gets or creates a guest user
+     * Helper method - Parses conversation ID (can be String or Long)
      * 
-     * For learning purposes, we create a default user
-     * In production, you'd get user from authentication token
+     * Returns null for missing or invalid IDs, which starts a new conversation
      */
-    private User getOrCreateGuestUser() {
-        // Try to find guest user
-        return userService.findByUsername("guest")
-                .orElseGet(() -> {
-                    // Create guest user if doesn't exist
-                    try {
-                        return userService.registerUser("guest", "guest@example.com", "guest123");
-                    } catch (Exception e) {
-                        // If exists, just return it
-                        return userService.findByUsername("guest").orElse(null);
-                    }
-                });
+    private Long parseConversationId(String conversationId) {
+        if (conversationId != null && !conversationId.isEmpty()) {
+            try {
+                return Long.parseLong(conversationId);
+            } catch (NumberFormatException e) {
+                log.warn("Invalid conversation ID format: {}", conversationId);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Helper method - true if the request names a route that doesn't exist
+     */
+    private boolean isUnknownRoute(String route) {
+        return route != null && !aiRouter.hasRoute(route);
+    }
+    
+    /**
+     * Helper method - 400 body for an unknown route
+     */
+    private ChatResponse unknownRouteResponse(String route) {
+        return new ChatResponse(
+                null,
+                "",
+                "error",
+                "Unknown route: " + route
+        );
+    }
+    
+    /**
+     * Helper method - The user making this request
+     * 
+     * Logged-in users are taken from their token (no database query).
+     * Requests without a token use the shared guest user (cached).
+     */
+    private User getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof TokenService.Claims claims) {
+            return claims.toUser();
+        }
+        return userService.getGuestUser();
     }
 }
@@ -0,0 +1,56 @@
+package com.chat.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * CachedResponse Entity - An AI answer saved for reuse
+ * 
+ * Persistent tier of the response cache (see ResponseCache): the same
+ * question with the same context gets the stored answer instead of a new
+ * AI call, even after a restart or on another instance.
+ * 
+ * @Entity - Maps to database table
+ */
+@Entity
+@Table(name = "ai_response_cache")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedResponse {
+    
+    /**
+     * Primary Key - SHA-256 (hex) of model + normalized messages
+     */
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+    
+    /**
+     * Model that produced the answer
+     */
+    @Column(nullable = false)
+    private String model;
+    
+    /**
+     * The AI's answer
+     */
+    @Column(nullable = false, length = 10000)
+    private String content;
+    
+    /**
+     * How long the original AI call took (reported as saved time on every hit)
+     */
+    @Column(name = "latency_ms", nullable = false)
+    private long latencyMs;
+    
+    /**
+     * When the answer was cached (entries expire after ai.cache.ttl-minutes)
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -17,7 +17,10 @@ import java.time.LocalDateTime;
  * @Entity - Maps to database table
  */
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        // Keyset pagination: WHERE conversation_id = ? AND (created_at, id) < (?, ?) ORDER BY created_at, id
+        @Index(name = "idx_chat_messages_conversation_created_id", columnList = "conversation_id, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -25,9 +28,14 @@ public class ChatMessage {
     
     /**
      * Primary Key - Auto-generated ID
+     * 
+     * Uses a database sequence that hands out IDs in blocks of 50 (pooled optimizer).
+     * Hibernate knows the ID before inserting, so it can send inserts in JDBC batches
+     * (IDENTITY columns would force one round trip per insert).
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_messages_seq")
+    @SequenceGenerator(name = "chat_messages_seq", sequenceName = "chat_messages_seq", allocationSize = 50)
     private Long id;
     
     /**
@@ -74,7 +82,9 @@ public class ChatMessage {
      */
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        if (createdAt == null) { // Imported messages keep their original time
+            createdAt = LocalDateTime.now();
+        }
     }
     
     /**
@@ -83,7 +93,7 @@ public class ChatMessage {
      * This helps maintain backward compatibility with existing API
      */
     public Message toMessage() {
-        return new Message(role, content);
+        return new Message(role, content, id);
     }
     
     /**
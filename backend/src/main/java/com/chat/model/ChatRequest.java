@@ -14,7 +14,8 @@ import lombok.NoArgsConstructor;
  * Example JSON:
  * {
  *   "message": "Hello, how are you?",
- *   "conversationId": "abc123"
+ *   "conversationId": "abc123",
+ *   "route": "haiku"
  * }
  */
 @Data
@@ -34,5 +35,12 @@ public class ChatRequest {
      */
     @JsonProperty("conversationId")
     private String conversationId;
+    
+    /**
+     * Optional: AI route to use (names from GET /api/routes)
+     * Kept for the rest of the conversation
+     */
+    @JsonProperty("route")
+    private String route;
 }
 
@@ -29,9 +29,12 @@ public class Conversation {
     
     /**
      * Primary Key - Auto-generated ID
+     * 
+     * Sequence with blocks of 50 IDs, so inserts can be batched (see ChatMessage)
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "conversations_seq")
+    @SequenceGenerator(name = "conversations_seq", sequenceName = "conversations_seq", allocationSize = 50)
     private Long id;
     
     /**
@@ -63,6 +66,12 @@ public class Conversation {
     @JsonIgnore
     private List<ChatMessage> messages = new ArrayList<>();
     
+    /**
+     * AI route this conversation uses (see AIRouter), null = router chooses
+     */
+    @Column(name = "route", length = 100)
+    private String route;
+    
     /**
      * When conversation was created
      */
@@ -80,7 +89,9 @@ public class Conversation {
      */
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
+        if (createdAt == null) { // Imported conversations keep their original time
+            createdAt = LocalDateTime.now();
+        }
         updatedAt = LocalDateTime.now();
         if (title == null || title.isEmpty()) {
             title = "New Conversation";
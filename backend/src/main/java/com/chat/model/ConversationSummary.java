@@ -0,0 +1,81 @@
+package com.chat.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * ConversationSummary Entity - Condensed version of older messages
+ * 
+ * Long conversations don't fit into the AI's context window.
+ * The summarizer folds older messages into this summary, and the AI
+ * gets the summary instead of those raw messages.
+ * 
+ * The summary is incremental: lastMessageId marks the newest message
+ * already folded in, so the next run only reads messages after it.
+ * 
+ * @Entity - Maps to database table
+ */
+@Entity
+@Table(name = "conversation_summaries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationSummary {
+    
+    /**
+     * Primary Key - Auto-generated ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    /**
+     * Conversation this summary belongs to (one summary per conversation)
+     */
+    @OneToOne
+    @JoinColumn(name = "conversation_id", nullable = false, unique = true)
+    private Conversation conversation;
+    
+    /**
+     * The summary text
+     */
+    @Column(nullable = false, length = 10000)
+    private String content;
+    
+    /**
+     * ID of the newest message folded into the summary
+     */
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+    
+    /**
+     * How many messages the summary covers
+     */
+    @Column(name = "message_count", nullable = false)
+    private long messageCount;
+    
+    /**
+     * Total characters of the original messages (for the compression ratio)
+     */
+    @Column(name = "source_chars", nullable = false)
+    private long sourceChars;
+    
+    /**
+     * When the summary was last updated
+     */
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    /**
+     * Automatically set timestamp before saving
+     */
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
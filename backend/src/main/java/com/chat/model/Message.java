@@ -1,5 +1,6 @@
 package com.chat.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -39,5 +40,20 @@ public class Message {
      */
     @JsonProperty("content")
     private String content;
+    
+    /**
+     * Database ID of the ChatMessage this came from (null for new messages)
+     * 
+     * Not sent to the AI API - only used to cache per-message work like token counts
+     */
+    @JsonIgnore
+    private Long id;
+    
+    /**
+     * Creates a message that is not stored in the database (yet)
+     */
+    public Message(String role, String content) {
+        this(role, content, null);
+    }
 }
 
@@ -0,0 +1,49 @@
+package com.chat.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Message Page Model - one page of conversation history
+ * 
+ * Returned by GET /api/history/{conversationId}?before=...&limit=...
+ * 
+ * Messages are ordered oldest first (ready to display).
+ * Cursors are message IDs:
+ * - nextCursor: pass as ?before= to load OLDER messages (null = no older messages)
+ * - prevCursor: pass as ?after= to load NEWER messages (null = no newer messages)
+ * 
+ * Example JSON:
+ * {
+ *   "messages": [ { "id": 51, "role": "user", "content": "Hello", ... }, ... ],
+ *   "nextCursor": 51,
+ *   "prevCursor": null
+ * }
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePage {
+    
+    /**
+     * Messages in this page, oldest first
+     */
+    @JsonProperty("messages")
+    private List<ChatMessage> messages;
+    
+    /**
+     * Cursor for the next page of older messages
+     */
+    @JsonProperty("nextCursor")
+    private Long nextCursor;
+    
+    /**
+     * Cursor for the previous page of newer messages
+     */
+    @JsonProperty("prevCursor")
+    private Long prevCursor;
+}
@@ -0,0 +1,16 @@
+package com.chat.repository;
+
+import com.chat.model.CachedResponse;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * CachedResponse Repository - Database operations for cached AI answers
+ * 
+ * Lookups use findById (the cache key is the primary key)
+ * 
+ * @Repository - Marks this as a data access component
+ */
+@Repository
+public interface CachedResponseRepository extends JpaRepository<CachedResponse, String> {
+}
@@ -2,10 +2,20 @@ package com.chat.repository;
 
 import com.chat.model.ChatMessage;
 import com.chat.model.Conversation;
+import com.chat.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * ChatMessage Repository - Database operations for Messages
@@ -25,6 +35,83 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long>
      */
     List<ChatMessage> findByConversationOrderByCreatedAtAsc(Conversation conversation);
     
+    /**
+     * Find the most recent messages after a given message ID, NEWEST first
+     * 
+     * Use afterId = 0 for the whole conversation, or the last summarized message ID
+     * to skip messages already in the summary. PageRequest.of(0, n) loads only n:
+     * SELECT * FROM chat_messages WHERE conversation_id = ? AND id > ? ORDER BY created_at DESC, id DESC LIMIT n
+     */
+    List<ChatMessage> findByConversationAndIdGreaterThanOrderByCreatedAtDescIdDesc(Conversation conversation, Long afterId, Pageable pageable);
+    
+    /**
+     * Find the oldest messages after a given message ID, OLDEST first (used by the summarizer)
+     */
+    List<ChatMessage> findByConversationAndIdGreaterThanOrderByCreatedAtAscIdAsc(Conversation conversation, Long afterId, Pageable pageable);
+    
+    /**
+     * Count messages after a given message ID (messages not summarized yet)
+     */
+    long countByConversationAndIdGreaterThan(Conversation conversation, Long afterId);
+    
+    /**
+     * Find the first message with a given role (e.g. the first "user" message for the title)
+     */
+    Optional<ChatMessage> findFirstByConversationAndRoleOrderByCreatedAtAscIdAsc(Conversation conversation, String role);
+    
+    /**
+     * Keyset pagination - messages OLDER than a cursor message, NEWEST first
+     * 
+     * Uses the (conversation_id, created_at, id) index, so the cost does not
+     * depend on how deep the user has scrolled (unlike OFFSET paging).
+     * Use PageRequest.of(0, limit) to limit the page size.
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.conversation = :conversation " +
+           "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<ChatMessage> findPageBefore(@Param("conversation") Conversation conversation,
+                                     @Param("createdAt") LocalDateTime createdAt,
+                                     @Param("id") Long id,
+                                     Pageable pageable);
+    
+    /**
+     * Keyset pagination - messages NEWER than a cursor message, OLDEST first
+     */
+    @Query("SELECT m FROM ChatMessage m WHERE m.conversation = :conversation " +
+           "AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) " +
+           "ORDER BY m.createdAt ASC, m.id ASC")
+    List<ChatMessage> findPageAfter(@Param("conversation") Conversation conversation,
+                                    @Param("createdAt") LocalDateTime createdAt,
+                                    @Param("id") Long id,
+                                    Pageable pageable);
+    
+    /**
+     * Stream all messages of a user's conversations (for export)
+     * 
+     * Returns a Stream instead of a List: rows are read from the database
+     * in chunks of fetchSize while the caller consumes them, so memory use
+     * doesn't grow with the number of messages.
+     * Must be called inside a transaction and closed after use (try-with-resources).
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.conversation c JOIN FETCH c.user u " +
+           "WHERE u = :user ORDER BY c.id, m.createdAt, m.id")
+    Stream<ChatMessage> streamByUser(@Param("user") User user);
+    
+    /**
+     * Stream all messages of all users (for export) - see streamByUser
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT m FROM ChatMessage m JOIN FETCH m.conversation c JOIN FETCH c.user u " +
+           "ORDER BY c.id, m.createdAt, m.id")
+    Stream<ChatMessage> streamAll();
+    
     /**
      * Count messages in a conversation
      */
@@ -0,0 +1,27 @@
+package com.chat.repository;
+
+import com.chat.model.Conversation;
+import com.chat.model.ConversationSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * ConversationSummary Repository - Database operations for summaries
+ * 
+ * @Repository - Marks this as a data access component
+ */
+@Repository
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, Long> {
+    
+    /**
+     * Find the summary of a conversation (if it has one yet)
+     */
+    Optional<ConversationSummary> findByConversation(Conversation conversation);
+    
+    /**
+     * Delete the summary of a conversation
+     */
+    void deleteByConversation(Conversation conversation);
+}
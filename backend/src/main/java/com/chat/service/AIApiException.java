@@ -0,0 +1,42 @@
+package com.chat.service;
+
+import java.time.Duration;
+
+/**
+ * AI API Exception - The AI API answered with an HTTP error
+ *
+ * Keeps the status code and the Retry-After header, so RetryPolicy can
+ * decide whether (and when) to try again. The message keeps the
+ * "AI_API_ERROR_..." / "API_KEY_INVALID" prefixes the chat fallback looks for.
+ */
+public class AIApiException extends RuntimeException {
+
+    private final int status;
+    private final Duration retryAfter;
+
+    /**
+     * @param status HTTP status code from the AI API
+     * @param retryAfter Wait time the API asked for (Retry-After header), or null
+     */
+    public AIApiException(int status, String message, Duration retryAfter) {
+        super(message);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * true for errors that may go away on their own:
+     * 429 (rate limited) and 5xx (provider overloaded or broken), except 501
+     */
+    public boolean isTransient() {
+        return status == 429 || (status >= 500 && status != 501);
+    }
+}
@@ -0,0 +1,380 @@
+package com.chat.service;
+
+import com.chat.config.AIRouterProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * AI Router - Spreads AI calls over several endpoints (providers, regions or models)
+ *
+ * Choosing a route ("power of two choices"): pick two routes at random
+ * (routes with a higher weight are picked more often) and use the one with
+ * the lower cost = average response time * (calls in progress + 1) / weight.
+ * The average is an EWMA (exponentially weighted moving average), so a
+ * route that gets slower loses traffic within a few calls.
+ *
+ * - Preferred route: a chat request (or its conversation) may name a route;
+ *   it is tried first, the others are the fallback
+ * - Failover: if a route fails before sending anything, the call moves on
+ *   to a route not tried yet; the last error is returned if all fail
+ * - Limits: a route never has more than max-concurrent calls in progress
+ * - Ejection: after eject-after-failures failures in a row a route is
+ *   skipped for eject-seconds (unless no other route is left)
+ *
+ * Metrics (tag route):
+ * - ai.route.latency - response time histogram of successful calls
+ * - ai.route.requests{outcome=success|failure}
+ * - ai.route.failovers{from} - calls moved to another route after a failure
+ * - ai.route.in.flight, ai.route.ewma (ms), ai.route.ejected (1 = skipped)
+ */
+@Slf4j
+@Service
+public class AIRouter {
+
+    /**
+     * Name of the route made from ai.api.* when no routes are configured
+     */
+    public static final String DEFAULT_ROUTE = "default";
+
+    private final AIRouterProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Routes by name, in configuration order
+     */
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+
+    /**
+     * What GET /api/routes shows about a route (no URL or key)
+     */
+    public record RouteStatus(String name, String model, double weight, int maxConcurrent,
+                              int inFlight, long ewmaMs, boolean ejected) {}
+
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public AIRouter(AIRouterProperties properties, MeterRegistry meterRegistry,
+                    @Value("${ai.api.url}") String apiUrl,
+                    @Value("${ai.api.key}") String apiKey,
+                    @Value("${ai.model.name}") String modelName) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        List<AIRouterProperties.Route> configured = properties.getRoutes();
+        if (configured.isEmpty()) {
+            AIRouterProperties.Route fallback = new AIRouterProperties.Route();
+            fallback.setName(DEFAULT_ROUTE);
+            fallback.setUrl(apiUrl);
+            fallback.setKey(apiKey);
+            fallback.setModel(modelName);
+            fallback.setMaxConcurrent(properties.getDefaultMaxConcurrent());
+            configured = List.of(fallback);
+        }
+        for (AIRouterProperties.Route config : configured) {
+            if (config.getName() == null || config.getUrl() == null || config.getModel() == null) {
+                throw new IllegalStateException("Every ai.router.routes entry needs name, url and model");
+            }
+            if (config.getWeight() <= 0 || config.getMaxConcurrent() <= 0) {
+                throw new IllegalStateException("Route " + config.getName() + ": weight and max-concurrent must be > 0");
+            }
+            if (routes.put(config.getName(), new Route(config)) != null) {
+                throw new IllegalStateException("Duplicate AI route name: " + config.getName());
+            }
+        }
+        log.info("AI routes: {}", routes.keySet());
+    }
+
+    /**
+     * true if a route with this name exists
+     */
+    public boolean hasRoute(String name) {
+        return routes.containsKey(name);
+    }
+
+    /**
+     * Model of a route, or null if there is no route with this name
+     */
+    public String modelOf(String name) {
+        Route route = routes.get(name);
+        return route != null ? route.model : null;
+    }
+
+    /**
+     * Models of all routes (each once, in configuration order)
+     */
+    public List<String> models() {
+        Set<String> models = new LinkedHashSet<>();
+        for (Route route : routes.values()) {
+            models.add(route.model);
+        }
+        return new ArrayList<>(models);
+    }
+
+    /**
+     * Current state of every route
+     */
+    public List<RouteStatus> status() {
+        long now = System.currentTimeMillis();
+        List<RouteStatus> result = new ArrayList<>();
+        for (Route route : routes.values()) {
+            result.add(new RouteStatus(route.name, route.model, route.weight, route.maxConcurrent,
+                    route.inFlight.get(), Math.round(route.ewmaMs), route.isEjected(now)));
+        }
+        return result;
+    }
+
+    /**
+     * Runs a single-answer call on the best route, failing over to others
+     *
+     * @param preferred Route to try first (null = let the router choose)
+     * @param call Sends the request to the given route
+     */
+    public <T> Mono<T> call(String preferred, Function<Route, Mono<T>> call) {
+        return route(preferred, true, route -> call.apply(route).flux()).singleOrEmpty();
+    }
+
+    /**
+     * Runs a streamed call on the best route
+     *
+     * Failover only happens before the first element - once the user has seen
+     * part of an answer, switching to another model would mix two answers.
+     * Stream durations are not recorded as latency (they depend on answer length).
+     */
+    public <T> Flux<T> stream(String preferred, Function<Route, Flux<T>> call) {
+        return route(preferred, false, call);
+    }
+
+    private <T> Flux<T> route(String preferred, boolean timed, Function<Route, Flux<T>> call) {
+        return Flux.defer(() -> attempt(preferred, timed, call, new HashSet<>(), null, null));
+    }
+
+    /**
+     * One try on one route; on an early failure, tries the next route
+     */
+    private <T> Flux<T> attempt(String preferred, boolean timed, Function<Route, Flux<T>> call,
+                                Set<Route> tried, Route previous, Throwable lastError) {
+        Route route = acquire(preferred, tried);
+        if (route == null) {
+            return Flux.error(lastError != null
+                    ? lastError
+                    : new NoRouteAvailableException("All AI routes are at their concurrency limit"));
+        }
+        if (previous != null) {
+            meterRegistry.counter("ai.route.failovers", "from", previous.name).increment();
+            log.warn("AI route {} failed ({}), trying {}", previous.name, lastError.getMessage(), route.name);
+        }
+        tried.add(route);
+
+        boolean[] received = {false};
+        long start = System.nanoTime();
+        return Flux.defer(() -> call.apply(route))
+                .doOnNext(item -> received[0] = true)
+                .doOnComplete(() -> route.succeeded(timed ? System.nanoTime() - start : -1))
+                .doOnError(e -> route.failed())
+                .doFinally(signal -> route.release())
+                .onErrorResume(e -> !received[0],
+                        e -> attempt(preferred, timed, call, tried, route, e));
+    }
+
+    /**
+     * Reserves a slot on the route to use next, or null if none is left
+     */
+    private Route acquire(String preferred, Set<Route> tried) {
+        long now = System.currentTimeMillis();
+        if (preferred != null) {
+            Route route = routes.get(preferred);
+            if (route != null && !tried.contains(route) && !route.isEjected(now) && route.tryAcquire()) {
+                return route;
+            }
+        }
+        Route route = pickAndAcquire(tried, now, false);
+        if (route == null) {
+            route = pickAndAcquire(tried, now, true); // Last resort: routes that failed recently
+        }
+        return route;
+    }
+
+    private Route pickAndAcquire(Set<Route> tried, long now, boolean includeEjected) {
+        List<Route> candidates = new ArrayList<>(routes.size());
+        for (Route route : routes.values()) {
+            if (!tried.contains(route) && route.hasCapacity() && (includeEjected || !route.isEjected(now))) {
+                candidates.add(route);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Route first = weightedPick(candidates, null);
+            Route second = candidates.size() > 1 ? weightedPick(candidates, first) : null;
+            Route best = second == null || first.cost() <= second.cost() ? first : second;
+            if (best.tryAcquire()) {
+                return best;
+            }
+            candidates.remove(best); // Filled up by another request in the meantime
+        }
+        return null;
+    }
+
+    /**
+     * Random route, chosen with probability proportional to its weight
+     */
+    private static Route weightedPick(List<Route> candidates, Route exclude) {
+        double total = 0;
+        for (Route route : candidates) {
+            if (route != exclude) {
+                total += route.weight;
+            }
+        }
+        double point = ThreadLocalRandom.current().nextDouble(total);
+        Route last = null;
+        for (Route route : candidates) {
+            if (route == exclude) {
+                continue;
+            }
+            last = route;
+            point -= route.weight;
+            if (point < 0) {
+                return route;
+            }
+        }
+        return last; // Rounding
+    }
+
+    /**
+     * One AI endpoint and its live statistics
+     */
+    public final class Route {
+
+        private final String name;
+        private final String url;
+        private final String key;
+        private final String model;
+        private final double weight;
+        private final int maxConcurrent;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failuresInARow = new AtomicInteger();
+        private volatile double ewmaMs; // 0 = no successful call yet
+        private volatile long ejectedUntil;
+
+        private final Timer latency;
+        private final Counter successes;
+        private final Counter failures;
+
+        private Route(AIRouterProperties.Route config) {
+            this.name = config.getName();
+            this.url = config.getUrl();
+            this.key = config.getKey();
+            this.model = config.getModel();
+            this.weight = config.getWeight();
+            this.maxConcurrent = config.getMaxConcurrent();
+
+            this.latency = Timer.builder("ai.route.latency")
+                    .tag("route", name)
+                    .description("Response time of successful AI calls per route")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.successes = Counter.builder("ai.route.requests").tags("route", name, "outcome", "success")
+                    .register(meterRegistry);
+            this.failures = Counter.builder("ai.route.requests").tags("route", name, "outcome", "failure")
+                    .register(meterRegistry);
+            Gauge.builder("ai.route.in.flight", inFlight, AtomicInteger::get).tag("route", name).register(meterRegistry);
+            Gauge.builder("ai.route.ewma", this, r -> r.ewmaMs).tag("route", name).baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("ai.route.ejected", this, r -> r.isEjected(System.currentTimeMillis()) ? 1 : 0)
+                    .tag("route", name).register(meterRegistry);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        private boolean hasCapacity() {
+            return inFlight.get() < maxConcurrent;
+        }
+
+        private boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= maxConcurrent) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            inFlight.decrementAndGet();
+        }
+
+        private boolean isEjected(long now) {
+            return ejectedUntil > now;
+        }
+
+        /**
+         * Lower is better; routes without data yet cost ~0, so they get tried
+         */
+        private double cost() {
+            return Math.max(ewmaMs, 1) * (inFlight.get() + 1) / weight;
+        }
+
+        /**
+         * @param nanos Call duration, or -1 to not record it
+         */
+        private void succeeded(long nanos) {
+            successes.increment();
+            failuresInARow.set(0);
+            if (nanos >= 0) {
+                latency.record(nanos, TimeUnit.NANOSECONDS);
+                double ms = nanos / 1_000_000.0;
+                double alpha = properties.getEwmaAlpha();
+                ewmaMs = ewmaMs == 0 ? ms : alpha * ms + (1 - alpha) * ewmaMs;
+            }
+        }
+
+        private void failed() {
+            failures.increment();
+            if (failuresInARow.incrementAndGet() >= properties.getEjectAfterFailures()) {
+                long until = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(properties.getEjectSeconds());
+                if (!isEjected(System.currentTimeMillis())) {
+                    log.warn("AI route {} failed {} times in a row, skipping it for {}s",
+                            name, failuresInARow.get(), properties.getEjectSeconds());
+                }
+                ejectedUntil = until;
+            }
+        }
+    }
+}
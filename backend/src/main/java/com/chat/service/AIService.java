@@ -1,18 +1,41 @@
 package com.chat.service;
 
 import com.chat.model.Message;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.chat.model.User;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * AI Service - Handles communication with AI APIs
@@ -23,6 +46,16 @@ import java.util.*;
  * 3. Parsing responses from AI API
  * 4. Error handling
  * 
+ * Metrics (per route):
+ * - ai.upstream.responses{route, status} - HTTP status of every upstream call
+ *   ("timeout" / "io_error" when there was no answer)
+ * - ai.upstream.request.size / ai.upstream.response.size - payload bytes
+ * - ai.upstream.tokens{route, type=prompt|completion} - from the API's "usage" field
+ * 
+ * Requests are written and responses read by ChatCompletionCodec (no Maps
+ * or JSON trees in between). Request building and response parsing are
+ * package-private so the JMH benchmarks (backend/benchmarks) can measure them.
+ * 
  * @Service annotation tells Spring this is a service component
  * Spring will automatically create an instance and inject it where needed
  */
@@ -31,97 +64,560 @@ import java.util.*;
 public class AIService {
     
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
+    private final ChatCompletionCodec codec;
+    private final ContextWindowPolicy contextWindowPolicy;
+    private final ResponseCache responseCache;
+    private final Counter coalescedCounter;
+    private final RetryPolicy retryPolicy;
+    private final AIRouter router;
+    private final TokenQuotaScheduler quotaScheduler;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary requestSize;
+    private final DistributionSummary responseSize;
+    
+    /**
+     * Circuit breaker and bulkhead for chat calls (configured under resilience4j.*.instances.aiService)
+     */
+    static final String RESILIENCE_NAME = "aiService";
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    
+    /**
+     * Upstream calls in progress, by request body hash (see completeCoalesced)
+     */
+    private final Map<String, Mono<ChatCompletionCodec.Response>> inFlight = new ConcurrentHashMap<>();
+    
+    /**
+     * System message - sets the AI's behavior
+     */
+    static final String SYSTEM_PROMPT = "You are a helpful, friendly, and knowledgeable AI assistant. " +
+            "Answer questions clearly and concisely.";
+    
+    private static final Message SYSTEM_MESSAGE = new Message("system", SYSTEM_PROMPT);
+    
+    /**
+     * max_tokens of chat answers (also what TokenQuotaScheduler reserves for the answer)
+     */
+    private static final int MAX_COMPLETION_TOKENS = 500;
+    
+    /**
+     * max_tokens of summaries
+     */
+    private static final int MAX_SUMMARY_TOKENS = 500;
+    
+    /**
+     * System message for conversation summaries
+     */
+    private static final String SUMMARY_PROMPT = "You summarize chat conversations. " +
+            "Update the summary with the new messages. Keep facts, names, decisions and open questions. " +
+            "Reply with the summary only.";
     
     @Value("${ai.api.key}")
     private String apiKey;
     
-    @Value("${ai.api.url}")
-    private String apiUrl;
-    
     @Value("${ai.model.name}")
     private String modelName;
     
     @Value("${ai.api.timeout:30000}")
     private int timeout;
     
+    // Controls randomness (0.0 = deterministic, 1.0 = creative)
+    @Value("${ai.temperature:0.7}")
+    private double temperature;
+    
+    // Identical requests sent at the same time share one upstream call
+    @Value("${ai.coalesce.enabled:true}")
+    private boolean coalesceRequests;
+    
     @Value("${app.url:https://react-spring-boot-and-azure-ai-chat.vercel.app}")
     private String appUrl;
     
+    /**
+     * Marker the OpenAI/OpenRouter streaming API sends as the last SSE event
+     */
+    private static final String STREAM_DONE = "[DONE]";
+    
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<ServerSentEvent<String>>() {};
+    
     /**
      * Constructor - Creates WebClient for making HTTP requests
      * 
      * WebClient is Spring's reactive HTTP client
      * It's better than RestTemplate for modern Spring Boot apps
      */
-    public AIService(WebClient.Builder webClientBuilder) {
+    public AIService(WebClient.Builder webClientBuilder, ContextWindowPolicy contextWindowPolicy,
+                     ResponseCache responseCache, MeterRegistry meterRegistry,
+                     CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                     RetryPolicy retryPolicy, AIRouter router, TokenQuotaScheduler quotaScheduler) {
         this.webClient = webClientBuilder
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .build();
-        this.objectMapper = new ObjectMapper();
+        this.codec = new ChatCompletionCodec(new ObjectMapper().getFactory());
+        this.contextWindowPolicy = contextWindowPolicy;
+        this.responseCache = responseCache;
+        this.coalescedCounter = Counter.builder("ai.requests.coalesced")
+                .description("Requests that joined an identical upstream call already in progress")
+                .register(meterRegistry);
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(RESILIENCE_NAME);
+        this.bulkhead = bulkheadRegistry.bulkhead(RESILIENCE_NAME);
+        this.retryPolicy = retryPolicy;
+        this.router = router;
+        this.quotaScheduler = quotaScheduler;
+        this.meterRegistry = meterRegistry;
+        this.requestSize = DistributionSummary.builder("ai.upstream.request.size")
+                .description("Size of request bodies sent to the AI API")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.responseSize = DistributionSummary.builder("ai.upstream.response.size")
+                .description("Size of response bodies from the AI API (streams: all event data)")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
     
     /**
      * Sends a message to AI API and gets response
      * 
+     * Blocking version - waits for the answer. Kept for the classic /api/chat endpoint.
+     * 
      * @param userMessage The user's message
      * @param conversationHistory Previous messages in the conversation (for context)
+     * @param route Preferred AI route (see AIRouter), or null to let the router choose
+     * @param user The user asking (for fair sharing of the token quota)
      * @return AI's response as a String
      */
-    public String getAIResponse(String userMessage, List<Message> conversationHistory) {
-        try {
+    public String getAIResponse(String userMessage, List<Message> conversationHistory, String route, User user) {
+        return getAIResponseAsync(userMessage, conversationHistory, route, user)
+                .contextCapture() // Hands the current trace (a thread-local) to the WebClient call
+                .block(); // Blocking call - waits for response
+    }
+    
+    /**
+     * Sends a message to AI API without blocking
+     * 
+     * Returns immediately with a Mono; the HTTP call runs on the WebClient's
+     * event loop, so no thread waits while the AI is thinking.
+     * Errors are turned into the same friendly message as the blocking version.
+     * 
+     * While the AI API is failing or very slow, the circuit breaker opens and
+     * calls fail immediately instead of each waiting for the timeout. It lets a
+     * few test calls through after a pause and closes again once they succeed.
+     * The bulkhead caps how many AI calls run at once.
+     * Rate limits (429) and server errors are retried with backoff, and very
+     * slow calls can be hedged (see RetryPolicy). The call goes to the
+     * preferred route, or the fastest available one (see AIRouter). With a
+     * token quota set, it may first wait for budget (see TokenQuotaScheduler).
+     * 
+     * If the response cache is on, an identical request (same model and messages)
+     * is answered from the cache without calling the AI. The cache lookup may
+     * hit the database, so subscribe off the event loop (ChatService does).
+     * 
+     * @param userMessage The user's message
+     * @param conversationHistory Previous messages in the conversation (for context)
+     * @param route Preferred AI route, or null to let the router choose
+     * @param user The user asking (for fair sharing of the token quota)
+     * @return Mono with AI's response
+     */
+    public Mono<String> getAIResponseAsync(String userMessage, List<Message> conversationHistory, String route,
+                                           User user) {
+        return Mono.defer(() -> {
             log.info("Sending message to AI: {}", userMessage);
             
             // Build the request body for AI API
-            Map<String, Object> requestBody = buildRequestBody(userMessage, conversationHistory);
-            
-            // Make HTTP POST request to AI API
-            // OpenRouter requires additional headers
-            String response = webClient.post()
-                    .uri(apiUrl)
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                    .header("HTTP-Referer", appUrl) // OpenRouter: Your app URL
-                    .header("X-Title", "AI Chat Assistant") // OpenRouter: Your app name
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .onStatus(status -> status.isError(), clientResponse -> {
-                        return clientResponse.bodyToMono(String.class)
-                                .flatMap(errorBody -> {
-                                    log.error("AI API error: HTTP {} - Response: {}", clientResponse.statusCode(), errorBody);
-                                    
-                                    // Check for authentication errors
-                                    if (clientResponse.statusCode().value() == 401) {
-                                        return Mono.error(new RuntimeException("API_KEY_INVALID: " + errorBody));
-                                    }
-                                    return Mono.error(new RuntimeException("AI_API_ERROR_" + clientResponse.statusCode() + ": " + errorBody));
-                                });
-                    })
-                    .bodyToMono(String.class)
-                    .timeout(Duration.ofMillis(timeout))
-                    .block(); // Blocking call - waits for response
+            ChatCompletionCodec.Request request = buildRequestBody(userMessage, conversationHistory, false);
             
-            // Parse the response to extract AI's message
-            return parseAIResponse(response);
+            // Same question with the same context answered before (by the chosen route's model,
+            // or by any route's model if none was chosen)?
+            List<String> cacheKeys = cacheKeys(route, request);
+            if (!cacheKeys.isEmpty()) {
+                Optional<String> cached = responseCache.get(cacheKeys);
+                if (cached.isPresent()) {
+                    log.info("Answered from response cache");
+                    return Mono.just(cached.get());
+                }
+            }
             
-        } catch (Exception e) {
+            // Make HTTP POST request and parse the response to extract AI's message
+            long start = System.nanoTime();
+            TokenQuotaScheduler.Flow flow = quotaScheduler.flowFor(user);
+            return completeCoalesced(request, route, flow)
+                    .map(response -> parseAIResponse(response, request, !cacheKeys.isEmpty(), start));
+        }).onErrorResume(e -> {
             log.error("Error calling AI API: {}", e.getMessage(), e);
-            
-            // Check if it's an authentication error
-            String errorMessage = e.getMessage();
-            if (errorMessage != null && errorMessage.contains("API_KEY_INVALID")) {
-                return "⚠️ **API Key Error**: Your OpenRouter API key is invalid or expired.\n\n" +
-                       "Please:\n" +
-                       "1. Go to https://openrouter.ai/keys to get a new API key\n" +
-                       "2. Update it in `backend/src/main/resources/application.properties`\n" +
-                       "3. Restart the backend server\n\n" +
-                       "Or set it as an environment variable: `export AI_API_KEY=your-new-key`";
+            return Mono.just(toFallbackMessage(e));
+        });
+    }
+    
+    /**
+     * Response cache keys of a request, one per model that may answer it
+     * 
+     * A chosen route is tried first but may fail over, so only its model is
+     * looked up; without one, any route may answer.
+     * 
+     * @return Empty if this request must not use the cache (cache off, temperature > 0)
+     */
+    private List<String> cacheKeys(String route, ChatCompletionCodec.Request request) {
+        String routeModel = route != null ? router.modelOf(route) : null;
+        List<String> models = routeModel != null ? List.of(routeModel) : router.models();
+        List<String> keys = new ArrayList<>(models.size());
+        for (String model : models) {
+            String key = responseCache.keyFor(model, temperature, request.messages());
+            if (key == null) {
+                return List.of();
             }
-            
-            // Fallback response if AI API fails
-            return "I apologize, but I'm having trouble connecting to the AI service. " +
-                   "Please check your API key and try again later.\n\n" +
-                   "Error details: " + (errorMessage != null ? errorMessage.substring(0, Math.min(200, errorMessage.length())) : "Unknown error");
+            keys.add(key);
         }
+        return keys;
+    }
+    
+    /**
+     * Summarizes older messages of a conversation (used by SummarizationService)
+     * 
+     * Folds new messages into the previous summary, so each run only has to
+     * send the messages added since the last summary.
+     * Unlike getAIResponse, failures are NOT turned into a chat message -
+     * the caller gets an exception and keeps the old summary.
+     * 
+     * @param previousSummary The current summary (null for the first run)
+     * @param messages Messages to fold into the summary, oldest first
+     * @return The new summary
+     */
+    public String summarize(String previousSummary, List<Message> messages) {
+        StringBuilder prompt = new StringBuilder();
+        if (previousSummary != null && !previousSummary.isEmpty()) {
+            prompt.append("Summary so far:\n").append(previousSummary).append("\n\n");
+        }
+        prompt.append("New messages:\n");
+        for (Message msg : messages) {
+            prompt.append(msg.getRole()).append(": ").append(msg.getContent()).append("\n");
+        }
+        
+        ChatCompletionCodec.Request request = new ChatCompletionCodec.Request(modelName,
+                List.of(new Message("system", SUMMARY_PROMPT), new Message("user", prompt.toString())),
+                0.2, // Summaries should be factual, not creative
+                MAX_SUMMARY_TOKENS, false);
+        
+        ChatCompletionCodec.Response response = quotaScheduler.submit(quotaScheduler.summaryFlow(),
+                promptTokens(request), MAX_SUMMARY_TOKENS,
+                () -> router.call(null, route -> complete(route, request)), this::usedTokens).block();
+        String summary = response != null ? response.content() : null;
+        if (summary == null) {
+            throw new IllegalStateException("Unexpected summary response format");
+        }
+        return summary;
+    }
+    
+    /**
+     * Sends a non-streaming request to one route and reads the response
+     * 
+     * HTTP errors become exceptions (see toApiError)
+     */
+    private Mono<ChatCompletionCodec.Response> complete(AIRouter.Route route, ChatCompletionCodec.Request request) {
+        return prepareRequest(route, request)
+                .retrieve()
+                .onStatus(status -> countResponse(route, status), this::toApiError)
+                .bodyToMono(byte[].class)
+                .map(bytes -> {
+                    responseSize.record(bytes.length);
+                    ChatCompletionCodec.Response response = readResponse(bytes);
+                    recordUsage(route, response);
+                    return response.withModel(route.getModel()); // For the response cache
+                })
+                .defaultIfEmpty(ChatCompletionCodec.Response.EMPTY) // Empty body -> "unexpected response format"
+                .timeout(Duration.ofMillis(timeout))
+                .doOnError(e -> countFailure(route, e));
+    }
+    
+    /**
+     * Counts the HTTP status of an upstream response
+     * 
+     * Used as the onStatus() check, which WebClient runs once per response
+     * 
+     * @return true for error statuses (they become exceptions, see toApiError)
+     */
+    private boolean countResponse(AIRouter.Route route, HttpStatusCode status) {
+        countStatus(route, String.valueOf(status.value()));
+        return status.isError();
+    }
+    
+    /**
+     * Counts calls that ended without any HTTP response
+     */
+    private void countFailure(AIRouter.Route route, Throwable e) {
+        if (e instanceof TimeoutException) {
+            countStatus(route, "timeout");
+        } else if (e instanceof WebClientRequestException) {
+            countStatus(route, "io_error");
+        }
+    }
+    
+    private void countStatus(AIRouter.Route route, String status) {
+        // Micrometer keeps one counter per tag combination and returns it on later calls
+        Counter.builder("ai.upstream.responses")
+                .description("Responses from the AI API by HTTP status")
+                .tags("route", route.getName(), "status", status)
+                .register(meterRegistry)
+                .increment();
+    }
+    
+    /**
+     * Reads a response body; bodies that aren't JSON count as responses without content
+     */
+    private ChatCompletionCodec.Response readResponse(byte[] json) {
+        try {
+            ChatCompletionCodec.Response response = codec.readResponse(json);
+            if (response.content() == null) {
+                log.warn("Unexpected response format: {}", new String(json, StandardCharsets.UTF_8));
+            }
+            return response;
+        } catch (IllegalStateException e) {
+            log.error("Error parsing AI response: {}", e.getMessage());
+            return ChatCompletionCodec.Response.EMPTY;
+        }
+    }
+    
+    /**
+     * Records the prompt and completion tokens of an AI API response
+     * 
+     * "usage": { "prompt_tokens": 57, "completion_tokens": 120, "total_tokens": 177 }
+     */
+    private void recordUsage(AIRouter.Route route, ChatCompletionCodec.Response response) {
+        recordTokens(route, "prompt", response.promptTokens());
+        recordTokens(route, "completion", response.completionTokens());
+    }
+    
+    private void recordTokens(AIRouter.Route route, String type, long tokens) {
+        if (tokens >= 0) {
+            DistributionSummary.builder("ai.upstream.tokens")
+                    .description("Tokens per AI call according to the API's usage field")
+                    .baseUnit("tokens")
+                    .tags("route", route.getName(), "type", type)
+                    .register(meterRegistry)
+                    .record(tokens);
+        }
+    }
+    
+    /**
+     * Like complete, but identical requests in flight at the same time share one upstream call
+     * 
+     * When hundreds of users send the same first question at once, only the
+     * first one goes upstream; the others wait for its result. Errors and
+     * timeouts reach every waiting caller (each then gets the fallback message).
+     * The entry is removed as soon as the call finishes, so nothing is cached
+     * here - later requests start a new call (or use ResponseCache).
+     * Only the first caller's call waits for (and uses) token quota.
+     */
+    private Mono<ChatCompletionCodec.Response> completeCoalesced(ChatCompletionCodec.Request request, String route,
+                                                                 TokenQuotaScheduler.Flow flow) {
+        if (!coalesceRequests) {
+            return completeAdmitted(request, route, flow);
+        }
+        String key = requestKey(request) + "@" + route;
+        return Mono.defer(() -> {
+            boolean[] started = {false};
+            AtomicReference<Mono<ChatCompletionCodec.Response>> entry = new AtomicReference<>();
+            Mono<ChatCompletionCodec.Response> call = inFlight.computeIfAbsent(key, k -> {
+                started[0] = true;
+                Mono<ChatCompletionCodec.Response> shared = completeAdmitted(request, route, flow)
+                        // Removed BEFORE the result reaches the callers (doFinally runs after), so a
+                        // caller asking again right away starts a new call instead of getting this one.
+                        // Only remove this call - a newer one may already be in flight under the same key
+                        .doOnSuccess(response -> inFlight.remove(k, entry.get()))
+                        .doOnError(e -> inFlight.remove(k, entry.get()))
+                        // Replays the result (or error) to every subscriber; a caller that
+                        // cancels doesn't cancel the call for the others
+                        .cache();
+                entry.set(shared);
+                return shared;
+            });
+            if (!started[0]) {
+                coalescedCounter.increment();
+                log.debug("Joining identical AI request already in progress");
+            }
+            return call;
+        });
+    }
+    
+    /**
+     * completeWithRetry() once the token quota allows it
+     * 
+     * Reserves the estimated tokens first and corrects them with the
+     * "usage" of the answer (see TokenQuotaScheduler).
+     */
+    private Mono<ChatCompletionCodec.Response> completeAdmitted(ChatCompletionCodec.Request request, String route,
+                                                                TokenQuotaScheduler.Flow flow) {
+        return quotaScheduler.submit(flow, promptTokens(request), MAX_COMPLETION_TOKENS,
+                () -> completeWithRetry(request, route), this::usedTokens);
+    }
+    
+    /**
+     * completeProtected() with retries and hedging
+     * 
+     * Every attempt goes through the circuit breaker on its own, so failed
+     * attempts count towards opening it, and once it is open no retries are made.
+     */
+    private Mono<ChatCompletionCodec.Response> completeWithRetry(ChatCompletionCodec.Request request, String route) {
+        return retryPolicy.execute(() -> completeProtected(request, route));
+    }
+    
+    /**
+     * complete() on the routes chosen by AIRouter, behind the bulkhead and the circuit breaker
+     * 
+     * The circuit breaker sees one call per attempt, so it only counts a
+     * failure when every route tried failed.
+     * 
+     * Bulkhead first: a call rejected because too many are running
+     * (BulkheadFullException) says nothing about the AI API's health, so it
+     * doesn't count for the circuit breaker. When the circuit is open, calls
+     * fail right away with CallNotPermittedException.
+     */
+    private Mono<ChatCompletionCodec.Response> completeProtected(ChatCompletionCodec.Request request, String route) {
+        return router.call(route, target -> complete(target, request))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead));
+    }
+    
+    /**
+     * SHA-256 (hex) of the serialized request body
+     */
+    private String requestKey(ChatCompletionCodec.Request request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            codec.digest(request, digest); // Hashed while written - no second byte[] of the body
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash request body", e);
+        }
+    }
+    
+    /**
+     * Turns an HTTP error response from the AI API into an AIApiException
+     */
+    private Mono<? extends Throwable> toApiError(ClientResponse clientResponse) {
+        return clientResponse.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .flatMap(errorBody -> {
+                    log.error("AI API error: HTTP {} - Response: {}", clientResponse.statusCode(), errorBody);
+                    int status = clientResponse.statusCode().value();
+                    Duration retryAfter = RetryPolicy.parseRetryAfter(
+                            clientResponse.headers().asHttpHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+                    
+                    // Check for authentication errors
+                    if (status == 401) {
+                        return Mono.error(new AIApiException(status, "API_KEY_INVALID: " + errorBody, null));
+                    }
+                    return Mono.error(new AIApiException(status,
+                            "AI_API_ERROR_" + clientResponse.statusCode() + ": " + errorBody, retryAfter));
+                });
+    }
+    
+    /**
+     * Streams the AI response token by token
+     * 
+     * Sends "stream": true upstream, so the API answers with Server-Sent Events.
+     * Each event carries a small JSON chunk:
+     * {
+     *   "choices": [
+     *     { "delta": { "content": "Hel" } }
+     *   ]
+     * }
+     * 
+     * We emit every delta the moment it arrives, so the caller sees the first
+     * token after the provider's time-to-first-token instead of the full answer time.
+     * Nothing blocks here - the Flux runs on the WebClient's event loop.
+     * 
+     * @param userMessage The user's message
+     * @param conversationHistory Previous messages in the conversation (for context)
+     * @param route Preferred AI route, or null to let the router choose
+     * @param user The user asking (for fair sharing of the token quota)
+     * @return Flux of text deltas (completes when the API sends [DONE])
+     */
+    public Flux<String> streamAIResponse(String userMessage, List<Message> conversationHistory, String route,
+                                         User user) {
+        log.info("Streaming message to AI: {}", userMessage);
+        
+        ChatCompletionCodec.Request request = buildRequestBody(userMessage, conversationHistory, true);
+        
+        return quotaScheduler.submitStream(quotaScheduler.flowFor(user), promptTokens(request), MAX_COMPLETION_TOKENS,
+                () -> router.stream(route, target -> streamFrom(target, request)));
+    }
+    
+    /**
+     * Streams one request from one route
+     */
+    private Flux<String> streamFrom(AIRouter.Route route, ChatCompletionCodec.Request request) {
+        return Flux.defer(() -> {
+            long[] bytes = {0};
+            return prepareRequest(route, request)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .retrieve()
+                    .onStatus(status -> countResponse(route, status), this::toApiError)
+                    .bodyToFlux(SSE_TYPE)
+                    // Keep-alive comments (": OPENROUTER PROCESSING") have no data
+                    .map(event -> event.data() != null ? event.data().trim() : "")
+                    .filter(data -> !data.isEmpty())
+                    .doOnNext(data -> bytes[0] += data.length()) // JSON chunks are (almost) all ASCII
+                    .takeWhile(data -> !STREAM_DONE.equals(data))
+                    .map(chunk -> parseStreamChunk(route, chunk))
+                    .filter(delta -> !delta.isEmpty())
+                    // Timeout applies between chunks, not to the whole answer
+                    .timeout(Duration.ofMillis(timeout))
+                    .doOnError(e -> countFailure(route, e))
+                    .doFinally(signal -> {
+                        if (bytes[0] > 0) {
+                            responseSize.record(bytes[0]);
+                        }
+                    });
+        });
+    }
+    
+    /**
+     * Builds the POST request for a route, with the headers OpenRouter expects
+     * 
+     * The route decides the URL, the API key and the model.
+     */
+    private WebClient.RequestHeadersSpec<?> prepareRequest(AIRouter.Route route, ChatCompletionCodec.Request request) {
+        // Serialized here (instead of by WebClient) to know its size
+        byte[] json = codec.write(request.withModel(route.getModel()));
+        requestSize.record(json.length);
+        return webClient.post()
+                .uri(route.getUrl())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + route.getKey())
+                .header("HTTP-Referer", appUrl) // OpenRouter: Your app URL
+                .header("X-Title", "AI Chat Assistant") // OpenRouter: Your app name
+                .bodyValue(json);
+    }
+    
+    /**
+     * Turns an AI API failure into a friendly chat message
+     * 
+     * Used by both the blocking and the streaming path so users see the same text
+     */
+    public String toFallbackMessage(Throwable e) {
+        // Circuit open or too many calls: failing fast on purpose
+        if (e instanceof CallNotPermittedException || e instanceof BulkheadFullException
+                || e instanceof NoRouteAvailableException || e instanceof QuotaExceededException) {
+            return "The AI service is having problems or is very busy right now. " +
+                   "Please try again in a minute.";
+        }
+        
+        // Check if it's an authentication error
+        String errorMessage = e.getMessage();
+        if (errorMessage != null && errorMessage.contains("API_KEY_INVALID")) {
+            return "⚠️ **API Key Error**: Your OpenRouter API key is invalid or expired.\n\n" +
+                   "Please:\n" +
+                   "1. Go to https://openrouter.ai/keys to get a new API key\n" +
+                   "2. Update it in `backend/src/main/resources/application.properties`\n" +
+                   "3. Restart the backend server\n\n" +
+                   "Or set it as an environment variable: `export AI_API_KEY=your-new-key`";
+        }
+        
+        // Fallback response if AI API fails
+        return "I apologize, but I'm having trouble connecting to the AI service. " +
+               "Please check your API key and try again later.\n\n" +
+               "Error details: " + (errorMessage != null ? errorMessage.substring(0, Math.min(200, errorMessage.length())) : "Unknown error");
     }
     
     /**
@@ -135,50 +631,47 @@ public class AIService {
      *     {"role": "user", "content": "Hello"}
      *   ]
      * }
+     * 
+     * The history messages are used as they are (not copied);
+     * ChatCompletionCodec writes the JSON when the request is sent.
+     * 
+     * @param stream true to ask the API for Server-Sent Events instead of one JSON body
      */
-    private Map<String, Object> buildRequestBody(String userMessage, List<Message> history) {
-        Map<String, Object> body = new HashMap<>();
-        
-        // Add model name
-        body.put("model", modelName);
-        
-        // Build messages array
-        List<Map<String, String>> messages = new ArrayList<>();
+    ChatCompletionCodec.Request buildRequestBody(String userMessage, List<Message> history, boolean stream) {
+        // Keep only the recent history that fits the context budget
+        history = contextWindowPolicy.selectHistory(SYSTEM_PROMPT, history, userMessage);
         
-        // Add system message (sets AI's behavior)
-        Map<String, String> systemMessage = new HashMap<>();
-        systemMessage.put("role", "system");
-        systemMessage.put("content", "You are a helpful, friendly, and knowledgeable AI assistant. " +
-                "Answer questions clearly and concisely.");
-        messages.add(systemMessage);
+        // System message (sets AI's behavior), conversation history, current user message
+        List<Message> messages = new ArrayList<>(history.size() + 2);
+        messages.add(SYSTEM_MESSAGE);
+        messages.addAll(history);
+        messages.add(new Message("user", userMessage));
         
-        // Add conversation history (if any)
-        if (history != null && !history.isEmpty()) {
-            for (Message msg : history) {
-                Map<String, String> msgMap = new HashMap<>();
-                msgMap.put("role", msg.getRole());
-                msgMap.put("content", msg.getContent());
-                messages.add(msgMap);
-            }
+        // temperature controls randomness (ai.temperature), max_tokens the maximum length of the response,
+        // stream sends tokens as they are generated
+        return new ChatCompletionCodec.Request(modelName, messages, temperature, MAX_COMPLETION_TOKENS, stream);
+    }
+    
+    /**
+     * Estimated prompt tokens of a request (see TokenBudgetContextWindowPolicy)
+     */
+    private static long promptTokens(ChatCompletionCodec.Request request) {
+        long tokens = 0;
+        for (Message message : request.messages()) {
+            tokens += TokenBudgetContextWindowPolicy.estimateTokens(message.getContent());
         }
-        
-        // Add current user message
-        Map<String, String> userMsg = new HashMap<>();
-        userMsg.put("role", "user");
-        userMsg.put("content", userMessage);
-        messages.add(userMsg);
-        
-        body.put("messages", messages);
-        
-        // Additional parameters
-        body.put("temperature", 0.7); // Controls randomness (0.0 = deterministic, 1.0 = creative)
-        body.put("max_tokens", 500);  // Maximum length of response
-        
-        return body;
+        return tokens;
+    }
+    
+    /**
+     * usage.total_tokens of an AI API response, or -1 if it has none
+     */
+    long usedTokens(ChatCompletionCodec.Response response) {
+        return response.totalTokens();
     }
     
     /**
-     * Parses the JSON response from AI API to extract the message
+     * Turns the AI API response into the chat answer
      * 
      * AI API response structure:
      * {
@@ -190,33 +683,52 @@ public class AIService {
      *     }
      *   ]
      * }
+     * 
+     * @param cache true to store the answer in the response cache; only real answers are cached,
+     *              under the model of the route that answered
+     * @param startNanos When the request was sent (for the cache's saved-latency metric)
      */
-    private String parseAIResponse(String jsonResponse) {
+    private String parseAIResponse(ChatCompletionCodec.Response response, ChatCompletionCodec.Request request,
+                                   boolean cache, long startNanos) {
         try {
-            JsonNode root = objectMapper.readTree(jsonResponse);
-            
-            // Navigate JSON structure to get the content
-            JsonNode choices = root.path("choices");
-            if (choices.isArray() && choices.size() > 0) {
-                JsonNode firstChoice = choices.get(0);
-                JsonNode message = firstChoice.path("message");
-                String content = message.path("content").asText();
-                
-                if (content != null && !content.isEmpty()) {
-                    return content.trim();
+            String content = response.content();
+            if (content != null) {
+                String cacheKey = cache && response.model() != null
+                        ? responseCache.keyFor(response.model(), temperature, request.messages())
+                        : null;
+                if (cacheKey != null) {
+                    responseCache.put(cacheKey, response.model(), content,
+                            Duration.ofNanos(System.nanoTime() - startNanos));
                 }
+                return content;
             }
             
-            // If parsing fails, return error message
-            log.warn("Unexpected response format: {}", jsonResponse);
+            // No content (readResponse logged the body)
             return "Sorry, I received an unexpected response format.";
             
         } catch (Exception e) {
-            log.error("Error parsing AI response: {}", e.getMessage());
+            log.error("Error processing AI response: {}", e.getMessage());
             return "Sorry, I had trouble processing the response.";
         }
     }
     
+    /**
+     * Parses one streamed chunk and returns its text delta
+     * 
+     * Chunks without content (role-only or finish chunks) return an empty string.
+     * Providers that report usage send it in the last chunk.
+     */
+    private String parseStreamChunk(AIRouter.Route route, String jsonChunk) {
+        try {
+            ChatCompletionCodec.Response chunk = codec.readChunk(jsonChunk);
+            recordUsage(route, chunk);
+            return chunk.content() != null ? chunk.content() : "";
+        } catch (Exception e) {
+            log.warn("Skipping unparseable stream chunk: {}", jsonChunk);
+            return "";
+        }
+    }
+    
     /**
      * Health check - tests if AI API is accessible
      */
@@ -0,0 +1,272 @@
+package com.chat.service;
+
+import com.chat.model.Message;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Chat Completion Codec - Writes AI API requests and reads AI API responses
+ *
+ * Works on the JSON tokens directly instead of going through Maps or a JsonNode tree:
+ * - requests are written field by field with a JsonGenerator into a pooled
+ *   buffer, so only the final byte[] is allocated; hashing a request (see
+ *   digest) writes straight into the hash and allocates no byte[] at all
+ * - responses are read in one pass with a JsonParser that keeps just the
+ *   content and the token usage and skips everything else
+ *
+ * Request (OpenAI / OpenRouter chat completions format):
+ * {"model":"...","messages":[{"role":"system","content":"..."},...],
+ *  "temperature":0.7,"max_tokens":500,"stream":true}
+ *
+ * Response: {"choices":[{"message":{"content":"..."}}],
+ *            "usage":{"prompt_tokens":57,"completion_tokens":120,"total_tokens":177}}
+ * Stream chunk: {"choices":[{"delta":{"content":"Hel"}}]} (usage, if any, in the last one)
+ */
+final class ChatCompletionCodec {
+
+    /**
+     * A request to the AI API
+     *
+     * @param messages System prompt, history and the new message, in order
+     * @param stream true to ask for Server-Sent Events instead of one JSON body
+     */
+    record Request(String model, List<Message> messages, double temperature, int maxTokens, boolean stream) {
+
+        /**
+         * The same request for another model (every AI route has its own)
+         */
+        Request withModel(String model) {
+            return new Request(model, messages, temperature, maxTokens, stream);
+        }
+    }
+
+    /**
+     * What we use from a response (or stream chunk)
+     *
+     * @param content choices[0].message.content (delta.content for chunks), null if missing
+     * @param promptTokens usage.prompt_tokens, -1 if missing (same for the other counts)
+     * @param model Model of the AI route that answered (set by AIService, not read from the JSON), or null
+     */
+    record Response(String content, long promptTokens, long completionTokens, long totalTokens, String model) {
+
+        static final Response EMPTY = new Response(null, -1, -1, -1, null);
+
+        /**
+         * The same response, marked as answered by the given model
+         */
+        Response withModel(String model) {
+            return new Response(content, promptTokens, completionTokens, totalTokens, model);
+        }
+    }
+
+    // Buffers that grew beyond this (huge requests) are not kept for the next request
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_KEPT_BUFFER_SIZE = 256 * 1024;
+
+    // At most this many idle buffers are kept (more only while that many requests are written at once)
+    private static final int MAX_POOLED_BUFFERS = 32;
+
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Idle buffers, shared by all threads
+     *
+     * Not a ThreadLocal: with virtual threads (spring.threads.virtual.enabled)
+     * every request has a new thread, so a buffer per thread would be 16 KiB
+     * allocated per request and never reused.
+     */
+    private final Queue<Buffer> buffers = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    ChatCompletionCodec(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * The JSON body (UTF-8) of a request
+     */
+    byte[] write(Request request) {
+        Buffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new Buffer(INITIAL_BUFFER_SIZE);
+        }
+        try {
+            write(request, buffer);
+            return buffer.copy();
+        } finally {
+            buffer.reset();
+            if (buffer.capacity() <= MAX_KEPT_BUFFER_SIZE) {
+                buffers.offer(buffer); // Dropped if the pool is full
+            }
+        }
+    }
+
+    /**
+     * Feeds the JSON body of a request (the same bytes write returns) into a hash
+     *
+     * Nothing is buffered - the generator writes straight into the digest.
+     */
+    void digest(Request request, MessageDigest digest) {
+        write(request, new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+    }
+
+    private void write(Request request, OutputStream out) {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("model", request.model());
+            generator.writeArrayFieldStart("messages");
+            for (Message message : request.messages()) {
+                generator.writeStartObject();
+                generator.writeStringField("role", message.getRole());
+                generator.writeStringField("content", message.getContent());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("temperature", request.temperature());
+            generator.writeNumberField("max_tokens", request.maxTokens());
+            if (request.stream()) {
+                generator.writeBooleanField("stream", true);
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize AI request", e);
+        }
+    }
+
+    /**
+     * Reads a (non-streaming) response
+     *
+     * @return The response; its content is trimmed, and null if missing or empty
+     * @throws IllegalStateException if the body is not valid JSON
+     */
+    Response readResponse(byte[] json) {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            Response response = read(parser, "message");
+            String content = response.content() != null ? response.content().trim() : null;
+            return new Response(content == null || content.isEmpty() ? null : content,
+                    response.promptTokens(), response.completionTokens(), response.totalTokens(), null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid JSON from AI API: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads one streamed chunk (the data of one Server-Sent Event)
+     *
+     * @return The chunk; its content is the text delta as sent, or null if it has none
+     * @throws IllegalStateException if the chunk is not valid JSON
+     */
+    Response readChunk(String json) {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return read(parser, "delta");
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid JSON from AI API: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads choices[0].{messageField}.content and usage from a JSON object
+     */
+    private static Response read(JsonParser parser, String messageField) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return Response.EMPTY;
+        }
+        String content = null;
+        long promptTokens = -1;
+        long completionTokens = -1;
+        long totalTokens = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                content = firstChoiceContent(parser, messageField);
+            } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken count = parser.nextToken();
+                    long tokens = count.isNumeric() ? parser.getValueAsLong() : -1;
+                    switch (name) {
+                        case "prompt_tokens" -> promptTokens = tokens;
+                        case "completion_tokens" -> completionTokens = tokens;
+                        case "total_tokens" -> totalTokens = tokens;
+                        default -> parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren(); // Fields we don't use (id, model, ...) - nothing is built for them
+            }
+        }
+        return new Response(content, promptTokens, completionTokens, totalTokens, null);
+    }
+
+    /**
+     * content of the first choice; leaves the parser at the end of the choices array
+     */
+    private static String firstChoiceContent(JsonParser parser, String messageField) throws IOException {
+        String content = null;
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if (parser.nextToken() == JsonToken.START_OBJECT && messageField.equals(field)) {
+                        content = contentField(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return content;
+    }
+
+    /**
+     * The "content" field of the current object (null if missing or null)
+     */
+    private static String contentField(JsonParser parser) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                content = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * A ByteArrayOutputStream whose array is kept (and reused) after reset()
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        private Buffer(int size) {
+            super(size);
+        }
+
+        private byte[] copy() {
+            return Arrays.copyOf(buf, count);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
@@ -3,13 +3,28 @@ package com.chat.service;
 import com.chat.model.*;
 import com.chat.repository.ChatMessageRepository;
 import com.chat.repository.ConversationRepository;
+import com.chat.repository.ConversationSummaryRepository;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -21,6 +36,18 @@ import java.util.stream.Collectors;
  * 3. Coordinating between controller and AI service
  * 4. Message timestamps automatically handled by database
  * 
+ * Sending a message runs in three phases:
+ * 1. Short transaction: load/create the conversation, load history, save the user message
+ * 2. AI call - NO transaction and NO database connection held (it can take 30 seconds!)
+ * 3. Short transaction: save the assistant message and update the title
+ * 
+ * Long conversations are summarized in the background (SummarizationService);
+ * the AI then gets the summary plus the messages after it.
+ * 
+ * Each step of a chat turn (conversation_lookup, history_load, user_message_save,
+ * ai_call, assistant_save, title_update) is a "chat.phase" observation: a timer
+ * chat.phase{phase} and a span in the request's trace (see TracingConfig).
+ * 
  * @Service tells Spring this is a service component
  */
 @Slf4j
@@ -30,7 +57,20 @@ public class ChatService {
     // Repository for database operations
     private final ConversationRepository conversationRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final ConversationSummaryRepository summaryRepository;
     private final AIService aiService;
+    private final ContextWindowPolicy contextWindowPolicy;
+    private final SummarizationService summarizationService;
+    
+    // Runs the short database phases in their own transactions
+    // (a @Transactional helper method would not work when called from inside this class)
+    private final TransactionTemplate transactionTemplate;
+    
+    // Bounded scheduler for blocking database work in reactive pipelines (see ReactiveConfig)
+    private final Scheduler databaseScheduler;
+    
+    // Times and traces each phase of a chat turn
+    private final ObservationRegistry observationRegistry;
     
     /**
      * Constructor - Spring automatically injects dependencies
@@ -38,10 +78,48 @@ public class ChatService {
     @Autowired
     public ChatService(ConversationRepository conversationRepository,
                       ChatMessageRepository chatMessageRepository,
-                      AIService aiService) {
+                      ConversationSummaryRepository summaryRepository,
+                      AIService aiService,
+                      ContextWindowPolicy contextWindowPolicy,
+                      SummarizationService summarizationService,
+                      TransactionTemplate transactionTemplate,
+                      Scheduler databaseScheduler,
+                      ObservationRegistry observationRegistry) {
         this.conversationRepository = conversationRepository;
         this.chatMessageRepository = chatMessageRepository;
+        this.summaryRepository = summaryRepository;
         this.aiService = aiService;
+        this.contextWindowPolicy = contextWindowPolicy;
+        this.summarizationService = summarizationService;
+        this.transactionTemplate = transactionTemplate;
+        this.databaseScheduler = databaseScheduler;
+        this.observationRegistry = observationRegistry;
+    }
+    
+    /**
+     * A not yet started observation of one phase (child of the current one, e.g. the HTTP request)
+     */
+    private Observation phase(String phase) {
+        return Observation.createNotStarted("chat.phase", observationRegistry)
+                .contextualName("chat " + phase)
+                .lowCardinalityKeyValue("phase", phase);
+    }
+    
+    /**
+     * Runs work on another thread (the database scheduler) as part of the request's trace
+     * 
+     * @param parent Observation current when the request came in (null = none)
+     */
+    private static <T> T inScope(Observation parent, Supplier<T> work) {
+        return parent != null ? parent.scoped(work) : work.get();
+    }
+    
+    private static void inScope(Observation parent, Runnable work) {
+        if (parent != null) {
+            parent.scoped(work);
+        } else {
+            work.run();
+        }
     }
     
     /**
@@ -50,69 +128,21 @@ public class ChatService {
      * @param userMessage The user's message
      * @param conversationId Optional conversation ID
      * @param user The user sending the message
+     * @param route Optional AI route (see AIRouter); remembered for the conversation
      * @return Response object with AI's reply and conversation ID
      */
-    @Transactional
-    public ChatResponse processMessage(String userMessage, Long conversationId, User user) {
+    public ChatResponse processMessage(String userMessage, Long conversationId, User user, String route) {
         try {
-            Conversation conversation;
+            // Phase 1: save the user message (short transaction)
+            PreparedTurn turn = prepareTurn(userMessage, conversationId, user, route);
+            Conversation conversation = turn.conversation();
             
-            // Get or create conversation
-            if (conversationId != null) {
-                conversation = conversationRepository.findByIdAndUser(conversationId, user)
-                        .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
-            } else {
-                // Create new conversation
-                conversation = new Conversation();
-                conversation.setUser(user);
-                conversation.setTitle("New Conversation"); // Can be updated later
-                conversation = conversationRepository.save(conversation);
-                log.info("Created new conversation {} for user {}", conversation.getId(), user.getUsername());
-            }
-            
-            // Get conversation history for AI context
-            List<ChatMessage> existingMessages = chatMessageRepository
-                    .findByConversationOrderByCreatedAtAsc(conversation);
+            // Phase 2: get AI response (no transaction, no connection held)
+            String aiResponse = phase("ai_call").observe(
+                    () -> aiService.getAIResponse(userMessage, turn.history(), turn.route(), user));
             
-            // Convert to Message format for AI service
-            List<Message> history = existingMessages.stream()
-                    .map(ChatMessage::toMessage)
-                    .collect(Collectors.toList());
-            
-            // Create and save user message
-            ChatMessage userMsg = new ChatMessage();
-            userMsg.setRole("user");
-            userMsg.setContent(userMessage);
-            userMsg.setConversation(conversation);
-            // Timestamp automatically set by @PrePersist
-            chatMessageRepository.save(userMsg);
-            
-            // Get AI response
-            String aiResponse = aiService.getAIResponse(userMessage, history);
-            
-            // Create and save AI message
-            ChatMessage aiMsg = new ChatMessage();
-            aiMsg.setRole("assistant");
-            aiMsg.setContent(aiResponse);
-            aiMsg.setConversation(conversation);
-            // Timestamp automatically set by @PrePersist
-            chatMessageRepository.save(aiMsg);
-            
-            // Update conversation title if it's still "New Conversation" and has enough messages
-            if ("New Conversation".equals(conversation.getTitle()) && 
-                chatMessageRepository.countByConversation(conversation) >= 4) {
-                // Use first user message as title (first 50 chars)
-                ChatMessage firstUserMsg = existingMessages.stream()
-                        .filter(m -> "user".equals(m.getRole()))
-                        .findFirst()
-                        .orElse(userMsg);
-                String title = firstUserMsg.getContent();
-                if (title.length() > 50) {
-                    title = title.substring(0, 50) + "...";
-                }
-                conversation.setTitle(title);
-                conversationRepository.save(conversation);
-            }
+            // Phase 3: save AI message and update title (short transaction)
+            completeTurn(turn, userMessage, aiResponse);
             
             log.info("Processed message for conversation {}: {}", conversation.getId(), userMessage);
             
@@ -135,6 +165,290 @@ public class ChatService {
         }
     }
     
+    /**
+     * Processes a chat message without blocking (reactive version of processMessage)
+     * 
+     * Same three phases, but no thread waits for the AI:
+     * 1. Save the user message on the database scheduler
+     * 2. AI call on the WebClient event loop
+     * 3. Save the AI message on the database scheduler
+     * 
+     * @param userMessage The user's message
+     * @param conversationId Optional conversation ID
+     * @param user The user sending the message
+     * @param route Optional AI route; remembered for the conversation
+     * @return Mono with the response object
+     */
+    public Mono<ChatResponse> processMessageReactive(String userMessage, Long conversationId, User user, String route) {
+        return Mono.defer(() -> {
+            // Subscribed on the request thread - remember the request's trace for the other threads
+            Observation request = observationRegistry.getCurrentObservation();
+            return Mono.fromCallable(() -> inScope(request, () -> prepareTurn(userMessage, conversationId, user, route)))
+                    .subscribeOn(databaseScheduler)
+                    .flatMap(turn -> observeAiCall(request,
+                                    aiService.getAIResponseAsync(userMessage, turn.history(), turn.route(), user))
+                            .publishOn(databaseScheduler)
+                            .map(aiResponse -> {
+                                inScope(request, () -> completeTurn(turn, userMessage, aiResponse));
+                                log.info("Processed message for conversation {}: {}", turn.conversation().getId(), userMessage);
+                                return new ChatResponse(
+                                        aiResponse,
+                                        turn.conversation().getId().toString(),
+                                        "success",
+                                        null
+                                );
+                            }));
+        }).onErrorResume(e -> {
+            log.error("Error processing message: {}", e.getMessage(), e);
+            return Mono.just(new ChatResponse(
+                    null,
+                    conversationId != null ? conversationId.toString() : "",
+                    "error",
+                    "An error occurred: " + e.getMessage()
+            ));
+        });
+    }
+    
+    /**
+     * Processes a chat message and streams the AI response token by token
+     * 
+     * Events sent to the client (text/event-stream), each with a small JSON body:
+     * - "conversation": {"conversationId": "123"} (first event, so new chats know their ID)
+     * - "delta": {"content": "Hel"} - a piece of the AI's answer
+     * - "error": {"error": "..."} - a friendly error message if the AI call fails
+     * - "done": {} - the stream is finished
+     * 
+     * Deltas are wrapped in JSON because SSE clients strip a leading space
+     * from plain-text data, which would glue words together.
+     * 
+     * The assistant message is saved once, after the stream completes or the
+     * client disconnects, with whatever text was received so far.
+     * 
+     * @param userMessage The user's message
+     * @param conversationId Optional conversation ID
+     * @param user The user sending the message
+     * @param route Optional AI route; remembered for the conversation
+     * @return Flux of Server-Sent Events
+     */
+    public Flux<ServerSentEvent<Map<String, String>>> streamMessage(String userMessage, Long conversationId, User user,
+                                                                    String route) {
+        Observation request = observationRegistry.getCurrentObservation();
+        PreparedTurn turn = prepareTurn(userMessage, conversationId, user, route);
+        Conversation conversation = turn.conversation();
+        
+        String id = conversation.getId().toString();
+        StringBuilder assembled = new StringBuilder();
+        
+        Flux<ServerSentEvent<Map<String, String>>> deltas = observeAiStream(request,
+                        () -> aiService.streamAIResponse(userMessage, turn.history(), turn.route(), user))
+                .doOnNext(assembled::append)
+                .map(delta -> streamEvent("delta", Map.of("content", delta)))
+                .onErrorResume(e -> {
+                    log.error("Error streaming AI response: {}", e.getMessage());
+                    String fallback = aiService.toFallbackMessage(e);
+                    if (assembled.length() == 0) {
+                        assembled.append(fallback);
+                    }
+                    return Flux.just(streamEvent("error", Map.of("error", fallback)));
+                })
+                .doFinally(signal -> {
+                    // Runs on the WebClient event loop - move the JPA work off it
+                    databaseScheduler.schedule(() -> inScope(request,
+                            () -> finishStreamedMessage(turn, userMessage, assembled.toString(), signal)));
+                });
+        
+        return Flux.concat(
+                Flux.just(streamEvent("conversation", Map.of("conversationId", id))),
+                deltas,
+                Flux.just(streamEvent("done", Map.of()))
+        );
+    }
+    
+    /**
+     * Observes the AI call phase of the reactive path (from subscribe to answer)
+     * 
+     * The observation goes into the Reactor context, where WebClient finds it
+     * as the parent of its HTTP call span.
+     */
+    private Mono<String> observeAiCall(Observation request, Mono<String> aiCall) {
+        return Mono.defer(() -> {
+            Observation observation = phase("ai_call").parentObservation(request).start();
+            return aiCall.doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+    
+    /**
+     * Observes the AI call phase of the streaming path (until the last token, or the client left)
+     * 
+     * Same as observeAiCall; the stream is created inside, so an exception
+     * while starting it also ends up as an error on the observation.
+     */
+    private Flux<String> observeAiStream(Observation request, Supplier<Flux<String>> aiStream) {
+        return Flux.defer(() -> {
+            Observation observation = phase("ai_call").parentObservation(request).start();
+            return Flux.defer(aiStream)
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+    
+    /**
+     * Builds one named Server-Sent Event with a JSON body
+     */
+    public static ServerSentEvent<Map<String, String>> streamEvent(String event, Map<String, String> data) {
+        return ServerSentEvent.<Map<String, String>>builder(data).event(event).build();
+    }
+    
+    /**
+     * Saves the assembled assistant message after a stream ends
+     */
+    private void finishStreamedMessage(PreparedTurn turn, String userMessage, String aiResponse, SignalType signal) {
+        Conversation conversation = turn.conversation();
+        try {
+            if (aiResponse.isEmpty()) {
+                log.warn("Stream for conversation {} ended ({}) without content", conversation.getId(), signal);
+                return;
+            }
+            completeTurn(turn, userMessage, aiResponse);
+            log.info("Streamed message for conversation {} ({})", conversation.getId(), signal);
+        } catch (Exception e) {
+            log.error("Error saving streamed message: {}", e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Conversation and AI context loaded in phase 1 of a chat turn
+     * 
+     * @param route AI route to prefer (null = router chooses)
+     */
+    private record PreparedTurn(Conversation conversation, List<Message> history, String route) {
+    }
+    
+    /**
+     * Phase 1 - loads or creates the conversation, loads the history and
+     * saves the user message in one short transaction
+     * 
+     * A route given in the request is stored on the conversation, so the
+     * following messages use it too without sending it again.
+     */
+    private PreparedTurn prepareTurn(String userMessage, Long conversationId, User user, String route) {
+        return transactionTemplate.execute(status -> {
+            // Get or create conversation
+            Conversation conversation = phase("conversation_lookup").observe(
+                    () -> getOrCreateConversation(conversationId, user));
+            if (route != null && !route.equals(conversation.getRoute())) {
+                conversation.setRoute(route); // Saved when the transaction commits
+            }
+            
+            // Lets the request's trace be found by conversation (a span attribute, not a metric tag)
+            Observation request = observationRegistry.getCurrentObservation();
+            if (request != null) {
+                request.highCardinalityKeyValue("chat.conversation.id", String.valueOf(conversation.getId()));
+            }
+            
+            List<Message> history = phase("history_load").observe(() -> loadHistory(conversation, conversationId != null));
+            
+            // Create and save user message
+            phase("user_message_save").observe(() -> saveMessage(conversation, "user", userMessage));
+            
+            return new PreparedTurn(conversation, history, conversation.getRoute());
+        });
+    }
+    
+    /**
+     * Loads the recent history the AI can use, oldest first, with the summary
+     * of older messages (if any) as the first message
+     * 
+     * @param existing false for a conversation created in this turn (no summary yet)
+     */
+    private List<Message> loadHistory(Conversation conversation, boolean existing) {
+        // Older messages may already be folded into a summary
+        Optional<ConversationSummary> summary = existing
+                ? summaryRepository.findByConversation(conversation)
+                : Optional.empty();
+        long afterId = summary.map(ConversationSummary::getLastMessageId).orElse(0L);
+        
+        // Get only the recent history the AI can use (newest first from the database)
+        List<ChatMessage> recentMessages = chatMessageRepository.findByConversationAndIdGreaterThanOrderByCreatedAtDescIdDesc(
+                conversation, afterId, PageRequest.of(0, contextWindowPolicy.maxHistoryMessages()));
+        
+        // Convert to Message format for AI service, oldest first
+        List<Message> history = recentMessages.stream()
+                .map(ChatMessage::toMessage)
+                .collect(Collectors.toCollection(ArrayList::new));
+        Collections.reverse(history);
+        
+        // The summary replaces the older messages
+        summary.ifPresent(s -> history.add(0, new Message("system",
+                "Summary of the earlier conversation:\n" + s.getContent())));
+        return history;
+    }
+    
+    /**
+     * Phase 3 - saves the assistant message and updates the title in one short transaction
+     */
+    private void completeTurn(PreparedTurn turn, String userMessage, String aiResponse) {
+        transactionTemplate.executeWithoutResult(status -> {
+            phase("assistant_save").observe(() -> saveMessage(turn.conversation(), "assistant", aiResponse));
+            phase("title_update").observe(() -> updateTitleIfNeeded(turn.conversation(), userMessage));
+        });
+        
+        // Runs in the background - compresses the history once it gets long
+        summarizationService.summarizeIfNeeded(turn.conversation().getId());
+    }
+    
+    /**
+     * Finds the user's conversation, or creates a new one when no ID is given
+     */
+    private Conversation getOrCreateConversation(Long conversationId, User user) {
+        if (conversationId != null) {
+            return conversationRepository.findByIdAndUser(conversationId, user)
+                    .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+        }
+        Conversation conversation = new Conversation();
+        conversation.setUser(user);
+        conversation.setTitle("New Conversation"); // Can be updated later
+        conversation = conversationRepository.save(conversation);
+        log.info("Created new conversation {} for user {}", conversation.getId(), user.getUsername());
+        return conversation;
+    }
+    
+    /**
+     * Creates and saves a message (timestamp set by @PrePersist)
+     * 
+     * Flushed right away, so the INSERT is timed as part of its phase instead
+     * of running later at commit (or inside the next query).
+     */
+    private ChatMessage saveMessage(Conversation conversation, String role, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setRole(role);
+        message.setContent(content);
+        message.setConversation(conversation);
+        return chatMessageRepository.saveAndFlush(message);
+    }
+    
+    /**
+     * Uses the first user message as title once the conversation has enough messages
+     */
+    private void updateTitleIfNeeded(Conversation conversation, String userMessage) {
+        if ("New Conversation".equals(conversation.getTitle()) && 
+            chatMessageRepository.countByConversation(conversation) >= 4) {
+            // Use first user message as title (first 50 chars)
+            String title = chatMessageRepository
+                    .findFirstByConversationAndRoleOrderByCreatedAtAscIdAsc(conversation, "user")
+                    .map(ChatMessage::getContent)
+                    .orElse(userMessage);
+            if (title.length() > 50) {
+                title = title.substring(0, 50) + "...";
+            }
+            conversation.setTitle(title);
+            conversationRepository.save(conversation);
+        }
+    }
+    
     /**
      * Gets conversation history for a given conversation ID
      * 
@@ -149,6 +463,64 @@ public class ChatService {
         return chatMessageRepository.findByConversationOrderByCreatedAtAsc(conversation);
     }
     
+    /**
+     * Gets one page of conversation history (keyset pagination)
+     * 
+     * - No cursor: the newest messages
+     * - before: messages older than that message (scrolling up)
+     * - after: messages newer than that message
+     * 
+     * @param conversationId The conversation ID
+     * @param user The user (for security - can only access own conversations)
+     * @param before Optional message ID cursor for older messages
+     * @param after Optional message ID cursor for newer messages
+     * @param limit Page size
+     * @return Page of messages (oldest first) with cursors for the next/previous page
+     */
+    @Transactional(readOnly = true)
+    public MessagePage getConversationHistoryPage(Long conversationId, User user, Long before, Long after, int limit) {
+        Conversation conversation = conversationRepository.findByIdAndUser(conversationId, user)
+                .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
+        
+        // Load one extra row to know if there are more messages beyond this page
+        PageRequest page = PageRequest.of(0, limit + 1);
+        
+        if (after != null) {
+            ChatMessage cursor = findCursor(after, conversation);
+            List<ChatMessage> newer = chatMessageRepository.findPageAfter(
+                    conversation, cursor.getCreatedAt(), cursor.getId(), page);
+            boolean hasNewer = newer.size() > limit;
+            List<ChatMessage> messages = new ArrayList<>(newer.subList(0, Math.min(limit, newer.size())));
+            Long nextCursor = messages.isEmpty() ? after : messages.get(0).getId();
+            Long prevCursor = hasNewer ? messages.get(messages.size() - 1).getId() : null;
+            return new MessagePage(messages, nextCursor, prevCursor);
+        }
+        
+        List<ChatMessage> older;
+        if (before != null) {
+            ChatMessage cursor = findCursor(before, conversation);
+            older = chatMessageRepository.findPageBefore(conversation, cursor.getCreatedAt(), cursor.getId(), page);
+        } else {
+            older = chatMessageRepository.findByConversationAndIdGreaterThanOrderByCreatedAtDescIdDesc(conversation, 0L, page);
+        }
+        boolean hasOlder = older.size() > limit;
+        List<ChatMessage> messages = new ArrayList<>(older.subList(0, Math.min(limit, older.size())));
+        Collections.reverse(messages); // Newest first from the database -> oldest first for display
+        
+        Long nextCursor = hasOlder ? messages.get(0).getId() : null;
+        Long prevCursor = before == null ? null : (messages.isEmpty() ? before : messages.get(messages.size() - 1).getId());
+        return new MessagePage(messages, nextCursor, prevCursor);
+    }
+    
+    /**
+     * Loads a cursor message and checks it belongs to the conversation
+     */
+    private ChatMessage findCursor(Long messageId, Conversation conversation) {
+        return chatMessageRepository.findById(messageId)
+                .filter(m -> m.getConversation().getId().equals(conversation.getId()))
+                .orElseThrow(() -> new IllegalArgumentException("Invalid cursor"));
+    }
+    
     /**
      * Gets all conversations for a user
      * 
@@ -185,7 +557,8 @@ public class ChatService {
         Conversation conversation = conversationRepository.findByIdAndUser(conversationId, user)
                 .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
         
-        // Delete all messages (cascade will handle this automatically)
+        // Delete the summary and all messages (cascade will handle messages automatically)
+        summaryRepository.deleteByConversation(conversation);
         chatMessageRepository.deleteByConversation(conversation);
         
         // Delete conversation
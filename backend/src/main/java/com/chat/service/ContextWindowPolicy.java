@@ -0,0 +1,36 @@
+package com.chat.service;
+
+import com.chat.model.Message;
+
+import java.util.List;
+
+/**
+ * Context Window Policy - decides how much history is sent to the AI
+ * 
+ * Sending the whole conversation every turn makes requests bigger, slower
+ * and more expensive as the chat grows. A policy picks the part of the
+ * history that fits into the model's context budget.
+ * 
+ * The default implementation is TokenBudgetContextWindowPolicy.
+ * To plug in your own, create another bean that implements this interface
+ * and mark it with @Primary.
+ */
+public interface ContextWindowPolicy {
+    
+    /**
+     * Maximum number of recent messages ChatService should load from the database
+     * 
+     * Older messages would never be sent, so there's no need to load them
+     */
+    int maxHistoryMessages();
+    
+    /**
+     * Selects the history to send along with the system prompt and the new message
+     * 
+     * @param systemPrompt The system prompt (always sent)
+     * @param history Previous messages, oldest first
+     * @param userMessage The new user message (always sent)
+     * @return The messages to send, oldest first
+     */
+    List<Message> selectHistory(String systemPrompt, List<Message> history, String userMessage);
+}
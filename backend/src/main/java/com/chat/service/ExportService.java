@@ -0,0 +1,108 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.Conversation;
+import com.chat.model.User;
+import com.chat.repository.ChatMessageRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Export Service - Writes chat archives as NDJSON
+ * 
+ * NDJSON = one JSON object per line:
+ * {"conversationId":1,"conversationTitle":"...","username":"guest","messageId":1,"role":"user","content":"Hi","createdAt":"..."}
+ * {"conversationId":1,"conversationTitle":"...","username":"guest","messageId":2,"role":"assistant",...}
+ * 
+ * Memory stays constant no matter how big the archive is:
+ * - messages are read as a database Stream (not a List)
+ * - each line is written straight to the response with Jackson's JsonGenerator
+ * - Hibernate's persistence context is cleared regularly, so read entities can be garbage collected
+ */
+@Slf4j
+@Service
+public class ExportService {
+    
+    // Clear the persistence context after this many rows
+    private static final int CLEAR_EVERY = 1000;
+    
+    private final ChatMessageRepository chatMessageRepository;
+    private final ObjectMapper objectMapper;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public ExportService(ChatMessageRepository chatMessageRepository, ObjectMapper objectMapper) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * Writes all messages of a user (or of all users) as NDJSON
+     * 
+     * @param user The user whose conversations are exported (ignored if allUsers is true)
+     * @param allUsers true to export every user's conversations
+     * @param out Where to write (e.g. the HTTP response body)
+     * @return Number of messages written
+     */
+    @Transactional(readOnly = true)
+    public long exportMessages(User user, boolean allUsers, OutputStream out) throws IOException {
+        long count = 0;
+        try (Stream<ChatMessage> messages = allUsers
+                     ? chatMessageRepository.streamAll()
+                     : chatMessageRepository.streamByUser(user);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            
+            // Don't close the response stream - Spring does that
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Lines are separated by '\n' ourselves (Jackson would add a space)
+            generator.setRootValueSeparator(null);
+            
+            Iterator<ChatMessage> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                writeMessage(generator, iterator.next());
+                count++;
+                
+                if (count % CLEAR_EVERY == 0) {
+                    generator.flush();
+                    entityManager.clear();
+                }
+            }
+            generator.flush();
+        }
+        log.info("Exported {} messages ({})", count, allUsers ? "all users" : user.getUsername());
+        return count;
+    }
+    
+    /**
+     * Writes one message as a single NDJSON line
+     */
+    private void writeMessage(JsonGenerator generator, ChatMessage message) throws IOException {
+        Conversation conversation = message.getConversation();
+        generator.writeStartObject();
+        generator.writeNumberField("conversationId", conversation.getId());
+        generator.writeStringField("conversationTitle", conversation.getTitle());
+        generator.writeStringField("username", conversation.getUser().getUsername());
+        generator.writeNumberField("messageId", message.getId());
+        generator.writeStringField("role", message.getRole());
+        generator.writeStringField("content", message.getContent());
+        generator.writeStringField("createdAt", message.getFormattedTimestamp());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+}
@@ -0,0 +1,197 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.Conversation;
+import com.chat.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Import Service - Loads chat archives from NDJSON
+ *
+ * Reads the same format that ExportService writes, one message per line:
+ * {"conversationId":1,"conversationTitle":"...","role":"user","content":"Hi","createdAt":"2024-01-01T10:00:00"}
+ *
+ * conversationId only groups lines: every source conversation becomes a new
+ * conversation of the importing user. Other fields (username, messageId) are ignored.
+ *
+ * Fast for millions of rows:
+ * - lines are parsed one at a time (the file is never held in memory)
+ * - rows are saved in chunks, each chunk in its own short transaction
+ * - IDs come from pooled sequences, so Hibernate sends the inserts as
+ *   JDBC batches (hibernate.jdbc.batch_size) instead of one by one
+ */
+@Slf4j
+@Service
+public class ImportService {
+
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Rows saved per transaction
+    @Value("${chat.import.chunk-size:1000}")
+    private int chunkSize;
+
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public ImportService(ObjectMapper objectMapper, TransactionTemplate transactionTemplate) {
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Result of an import
+     *
+     * @param imported Messages saved
+     * @param skipped Lines without role/content, or with content that is too long
+     * @param conversations Conversations created
+     * @param millis Time taken
+     */
+    public record ImportResult(long imported, long skipped, int conversations, long millis) {
+
+        public long rowsPerSecond() {
+            return millis == 0 ? imported : imported * 1000 / millis;
+        }
+    }
+
+    /**
+     * Imports NDJSON messages into new conversations of the given user
+     *
+     * If a line isn't JSON, every valid line before it is saved first and
+     * ImportStoppedException reports what was imported.
+     *
+     * @param user Owner of the imported conversations
+     * @param in NDJSON input (e.g. the HTTP request body)
+     * @return Counts and timing
+     * @throws ImportStoppedException if a line isn't JSON
+     * @throws IOException if the input can't be read
+     */
+    public ImportResult importMessages(User user, InputStream in) throws IOException {
+        long start = System.currentTimeMillis();
+        long imported = 0;
+        long skipped = 0;
+
+        // Source conversation ID -> new conversation ID
+        Map<String, Long> conversationIds = new HashMap<>();
+        List<JsonNode> chunk = new ArrayList<>(chunkSize);
+
+        try (MappingIterator<JsonNode> lines = objectMapper.readerFor(JsonNode.class).readValues(in)) {
+            while (lines.hasNextValue()) {
+                JsonNode line = lines.nextValue();
+                if (!isValid(line)) {
+                    skipped++;
+                    continue;
+                }
+                chunk.add(line);
+                if (chunk.size() == chunkSize) {
+                    saveChunk(user, chunk, conversationIds);
+                    imported += chunk.size();
+                    chunk.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // Keep the valid lines read so far, then report where it stopped
+            if (!chunk.isEmpty()) {
+                saveChunk(user, chunk, conversationIds);
+                imported += chunk.size();
+            }
+            ImportResult saved = new ImportResult(imported, skipped, conversationIds.size(),
+                    System.currentTimeMillis() - start);
+            long lineNumber = e.getLocation() != null ? e.getLocation().getLineNr() : -1;
+            throw new ImportStoppedException(saved, lineNumber, e.getOriginalMessage(), e);
+        }
+        if (!chunk.isEmpty()) {
+            saveChunk(user, chunk, conversationIds);
+            imported += chunk.size();
+        }
+
+        ImportResult result = new ImportResult(imported, skipped, conversationIds.size(),
+                System.currentTimeMillis() - start);
+        log.info("Imported {} messages into {} conversations for {} ({} skipped, {} rows/s)",
+                result.imported(), result.conversations(), user.getUsername(),
+                result.skipped(), result.rowsPerSecond());
+        return result;
+    }
+
+    /**
+     * Saves one chunk in its own transaction
+     *
+     * The persistence context ends with the transaction, so memory doesn't grow with the import.
+     */
+    private void saveChunk(User user, List<JsonNode> chunk, Map<String, Long> conversationIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            User owner = entityManager.getReference(User.class, user.getId());
+
+            for (JsonNode line : chunk) {
+                String sourceId = line.path("conversationId").asText("");
+                LocalDateTime createdAt = parseTime(line.path("createdAt").asText(null));
+
+                Long conversationId = conversationIds.get(sourceId);
+                if (conversationId == null) {
+                    Conversation conversation = new Conversation();
+                    conversation.setUser(owner);
+                    conversation.setTitle(line.path("conversationTitle").asText(null));
+                    conversation.setCreatedAt(createdAt);
+                    entityManager.persist(conversation); // ID is assigned here, no insert yet
+                    conversationId = conversation.getId();
+                    conversationIds.put(sourceId, conversationId);
+                }
+
+                ChatMessage message = new ChatMessage();
+                message.setConversation(entityManager.getReference(Conversation.class, conversationId));
+                message.setRole(line.get("role").asText());
+                message.setContent(line.get("content").asText());
+                message.setCreatedAt(createdAt);
+                entityManager.persist(message);
+            }
+        });
+    }
+
+    /**
+     * A line needs a role and content that fits the content column
+     */
+    private boolean isValid(JsonNode line) {
+        JsonNode role = line.get("role");
+        JsonNode content = line.get("content");
+        return role != null && role.isTextual() && !role.asText().isBlank()
+                && content != null && content.isTextual()
+                && !content.asText().isEmpty() && content.asText().length() <= 5000;
+    }
+
+    /**
+     * Parses an ISO timestamp; missing or invalid means "now"
+     */
+    private LocalDateTime parseTime(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
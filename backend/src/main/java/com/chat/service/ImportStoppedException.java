@@ -0,0 +1,32 @@
+package com.chat.service;
+
+import java.io.IOException;
+
+/**
+ * Import Stopped Exception - An NDJSON import hit a line that isn't JSON
+ *
+ * Thrown by ImportService after saving every valid line before the broken
+ * one, so the result tells the client exactly what was imported.
+ */
+public class ImportStoppedException extends IOException {
+
+    private final ImportService.ImportResult result;
+    private final long lineNumber;
+
+    public ImportStoppedException(ImportService.ImportResult result, long lineNumber, String reason, Throwable cause) {
+        super("Invalid JSON at line " + lineNumber + ": " + reason, cause);
+        this.result = result;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * What was saved before the broken line
+     */
+    public ImportService.ImportResult getResult() {
+        return result;
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+}
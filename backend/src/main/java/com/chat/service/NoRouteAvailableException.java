@@ -0,0 +1,14 @@
+package com.chat.service;
+
+/**
+ * No Route Available Exception - Every AI route is at its concurrency limit
+ *
+ * Says nothing about the AI API's health, so the circuit breaker ignores it
+ * (resilience4j.circuitbreaker.instances.aiService.ignore-exceptions).
+ */
+public class NoRouteAvailableException extends RuntimeException {
+
+    public NoRouteAvailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,158 @@
+package com.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Password Hashing Service - Runs BCrypt on its own bounded thread pool
+ *
+ * BCrypt takes ~100ms of CPU per call (by design). Running it directly on
+ * request threads lets a burst of logins take every thread and CPU away from
+ * /api/chat. Here at most auth.hash.threads hashes run at once, at most
+ * auth.hash.queue-size wait, and anything beyond that is rejected at once
+ * with RejectedExecutionException (the controller answers 429).
+ *
+ * Metrics:
+ * - auth.hash.queue.depth - hashing tasks waiting
+ * - auth.hash.latency{operation=matches|encode} - time to hash (excluding the wait)
+ * - auth.hash.wait - time from submitting to finishing (including the wait)
+ * - auth.hash.rejected - tasks rejected because the queue was full or timed out
+ */
+@Slf4j
+@Service
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolTaskExecutor executor;
+
+    private final Timer matchesTimer;
+    private final Timer encodeTimer;
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    // Current BCrypt cost - older hashes are upgraded at login
+    @Value("${auth.bcrypt.strength:10}")
+    private int strength;
+
+    // Longest a request waits for its hash (queue + hashing)
+    @Value("${auth.hash.timeout-ms:5000}")
+    private long timeoutMs;
+
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  @Qualifier("passwordHashExecutor") ThreadPoolTaskExecutor executor,
+                                  MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.executor = executor;
+        this.matchesTimer = Timer.builder("auth.hash.latency").tag("operation", "matches").register(meterRegistry);
+        this.encodeTimer = Timer.builder("auth.hash.latency").tag("operation", "encode").register(meterRegistry);
+        this.waitTimer = Timer.builder("auth.hash.wait")
+                .description("Time from submitting a hash until it is done")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.hash.rejected").register(meterRegistry);
+        Gauge.builder("auth.hash.queue.depth", executor,
+                        e -> e.getThreadPoolExecutor().getQueue().size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hashes a new password
+     *
+     * @throws RejectedExecutionException if too many hashes are running or waiting
+     */
+    public String encode(String rawPassword) {
+        return run(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    /**
+     * Checks a password against a stored hash
+     *
+     * @throws RejectedExecutionException if too many hashes are running or waiting
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> matchesTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Checks a password and, if it is correct but the hash uses a different
+     * cost than configured, also makes a new hash in the same task
+     *
+     * @return null if the password is wrong; otherwise the hash to store
+     *         (the same string if no upgrade was needed)
+     * @throws RejectedExecutionException if too many hashes are running or waiting
+     */
+    public String matchesAndUpgrade(String rawPassword, String encodedPassword) {
+        return run(() -> {
+            boolean valid = matchesTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+            if (!valid) {
+                return null;
+            }
+            if (!needsRehash(encodedPassword)) {
+                return encodedPassword;
+            }
+            return encodeTimer.record(() -> passwordEncoder.encode(rawPassword));
+        });
+    }
+
+    /**
+     * true if a hash was made with a different BCrypt cost than configured
+     *
+     * Hash format: $2a$10$... (the number is the cost)
+     */
+    boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(3) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private <T> T run(Callable<T> task) {
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (TaskRejectedException e) {
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("Too many password checks in progress", e);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("Password check timed out", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
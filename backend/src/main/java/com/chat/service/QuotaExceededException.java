@@ -0,0 +1,14 @@
+package com.chat.service;
+
+/**
+ * Quota Exceeded Exception - A request could not get AI token budget in time
+ *
+ * Thrown by TokenQuotaScheduler when its queue is full or a request waited
+ * longer than ai.quota.max-wait-ms. The chat shows the "busy" message.
+ */
+public class QuotaExceededException extends RuntimeException {
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
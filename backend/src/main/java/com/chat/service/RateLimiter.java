@@ -0,0 +1,223 @@
+package com.chat.service;
+
+import com.chat.config.RateLimitProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate Limiter - Token buckets per user (or IP) and endpoint group
+ *
+ * Each bucket holds up to "capacity" tokens and gets "per-minute" new tokens
+ * per minute; a request takes one token or is rejected (429).
+ *
+ * A bucket is stored as a single number: the time at which it will be full
+ * again (the "GCRA" form of a token bucket). Taking a token moves that time
+ * forward by one token's refill time with a compare-and-set - no locks, no
+ * allocation per request.
+ *
+ * Memory stays bounded:
+ * - a bucket whose full-again time has passed is identical to a new bucket,
+ *   so evictIdleBuckets() removes it without changing any limit (it first
+ *   marks the bucket as retired, so a request still holding it moves on to
+ *   the new bucket instead of updating one that is no longer in the map)
+ * - beyond rate-limit.max-keys buckets per group, new keys share one bucket
+ *
+ * Metrics:
+ * - rate.limit.rejected{group, scope=key|global} - requests answered with 429
+ * - rate.limit.buckets{group} - buckets currently kept
+ */
+@Slf4j
+@Service
+public class RateLimiter {
+
+    /**
+     * Endpoint groups with their own limits
+     */
+    public enum Group { CHAT, HISTORY, AUTH }
+
+    private final Map<Group, Buckets> groups = new EnumMap<>(Group.class);
+    private final Buckets chatGlobal;
+    private final boolean enabled;
+
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        int maxKeys = properties.getMaxKeys();
+        groups.put(Group.CHAT, new Buckets("chat", "key", properties.getChat(), maxKeys, meterRegistry));
+        groups.put(Group.HISTORY, new Buckets("history", "key", properties.getHistory(), maxKeys, meterRegistry));
+        groups.put(Group.AUTH, new Buckets("auth", "key", properties.getAuth(), maxKeys, meterRegistry));
+        this.chatGlobal = new Buckets("chat", "global", properties.getChatGlobal(), 1, meterRegistry);
+    }
+
+    /**
+     * Takes a token for one request
+     *
+     * @param key The user or client the request comes from (e.g. "user:42", "ip:10.0.0.1")
+     * @return 0 if the request may proceed, otherwise nanoseconds until it would be allowed
+     */
+    public long tryAcquire(Group group, String key) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        Buckets buckets = groups.get(group);
+        long wait = buckets.tryAcquire(key, now);
+        if (wait == 0 && group == Group.CHAT) {
+            // Per-user check first, so a client over its own limit can't use up the global one
+            wait = chatGlobal.tryAcquire("", now);
+            if (wait > 0) {
+                // Rejected by the global limit: the user gets their token back (not throttled twice)
+                buckets.refund(key);
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Removes buckets that are full again - runs in the background
+     */
+    @Scheduled(fixedDelayString = "${rate-limit.evict-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        for (Buckets buckets : groups.values()) {
+            int removed = 0;
+            for (Bucket bucket : buckets.map.values()) {
+                long fullAt = bucket.fullAt.get();
+                // Retire first: a request that took a token since the check keeps the bucket
+                if (fullAt != Bucket.RETIRED && fullAt <= now && bucket.fullAt.compareAndSet(fullAt, Bucket.RETIRED)) {
+                    buckets.map.remove(bucket.key, bucket);
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                log.debug("Removed {} idle {} rate limit buckets", removed, buckets.name);
+            }
+        }
+    }
+
+    /**
+     * One bucket: the time (System.nanoTime) at which it is full again
+     */
+    private static final class Bucket {
+
+        // fullAt of a bucket removed from the map - requests holding it look it up again
+        private static final long RETIRED = Long.MIN_VALUE;
+
+        private final String key;
+        private final AtomicLong fullAt;
+
+        private Bucket(String key, long now) {
+            this.key = key;
+            this.fullAt = new AtomicLong(now);
+        }
+    }
+
+    /**
+     * The buckets of one endpoint group, by key
+     */
+    private static final class Buckets {
+
+        private static final String OVERFLOW_KEY = "";
+
+        private final String name;
+        private final Map<String, Bucket> map = new ConcurrentHashMap<>();
+        private final int maxKeys;
+        private final Counter rejected;
+
+        // Refill time of one token, and of a whole bucket (0 = limit off)
+        private final long tokenNanos;
+        private final long capacityNanos;
+
+        private Buckets(String name, String scope, RateLimitProperties.Limit limit, int maxKeys,
+                        MeterRegistry meterRegistry) {
+            this.name = name;
+            this.maxKeys = maxKeys;
+            if (limit.getCapacity() <= 0) {
+                this.tokenNanos = 0;
+                this.capacityNanos = 0;
+            } else {
+                if (limit.getPerMinute() <= 0) {
+                    throw new IllegalStateException("rate-limit." + name + ": per-minute must be > 0");
+                }
+                this.tokenNanos = (long) (TimeUnit.MINUTES.toNanos(1) / limit.getPerMinute());
+                this.capacityNanos = tokenNanos * limit.getCapacity();
+            }
+            this.rejected = Counter.builder("rate.limit.rejected").tags("group", name, "scope", scope)
+                    .register(meterRegistry);
+            if ("key".equals(scope)) {
+                Gauge.builder("rate.limit.buckets", map, Map::size).tag("group", name).register(meterRegistry);
+            }
+        }
+
+        private long tryAcquire(String key, long now) {
+            if (tokenNanos == 0) {
+                return 0;
+            }
+            Bucket bucket = bucketFor(key, now);
+            while (true) {
+                long fullAt = bucket.fullAt.get();
+                if (fullAt == Bucket.RETIRED) {
+                    // Evicted while we held it: continue with the bucket that replaces it
+                    map.remove(bucket.key, bucket);
+                    bucket = bucketFor(key, now);
+                    continue;
+                }
+                long next = Math.max(fullAt, now) + tokenNanos;
+                long wait = next - now - capacityNanos;
+                if (wait > 0) {
+                    rejected.increment();
+                    return wait;
+                }
+                if (bucket.fullAt.compareAndSet(fullAt, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Gives back the token a request just took
+         */
+        private void refund(String key) {
+            if (tokenNanos == 0) {
+                return;
+            }
+            Bucket bucket = map.get(key);
+            if (bucket == null) {
+                bucket = map.get(OVERFLOW_KEY);
+            }
+            if (bucket == null) {
+                return;
+            }
+            while (true) {
+                long fullAt = bucket.fullAt.get();
+                if (fullAt == Bucket.RETIRED || bucket.fullAt.compareAndSet(fullAt, fullAt - tokenNanos)) {
+                    return;
+                }
+            }
+        }
+
+        private Bucket bucketFor(String key, long now) {
+            Bucket bucket = map.get(key);
+            if (bucket == null) {
+                // Too many keys (e.g. a flood of new IPs): they all share one bucket
+                String mapKey = map.size() < maxKeys ? key : OVERFLOW_KEY;
+                bucket = map.computeIfAbsent(mapKey, k -> new Bucket(k, now));
+            }
+            return bucket;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.chat.service;
+
+import com.chat.model.CachedResponse;
+import com.chat.model.Message;
+import com.chat.repository.CachedResponseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import reactor.core.scheduler.Scheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Response Cache - Reuses AI answers for identical prompts
+ *
+ * Many chats start with the same FAQ-style question. With the cache on,
+ * the second user asking it gets the stored answer instead of a new AI call.
+ *
+ * Key = SHA-256 of the model name and every message sent (system prompt,
+ * history, question), each normalized: trimmed, whitespace collapsed, lower case.
+ * So "What is Java?" and "what is  java? " share an answer, but the same
+ * question inside a different conversation does not.
+ *
+ * Two tiers:
+ * - memory: up to ai.cache.max-entries answers, least recently used removed first
+ * - database (ai.cache.persistent=true): survives restarts and is shared by instances
+ *
+ * Off by default (ai.cache.enabled). Requests with temperature > 0 are
+ * random by design and skip the cache unless ai.cache.include-nondeterministic=true.
+ *
+ * Metrics:
+ * - ai.cache.requests{result=hit|miss|bypass}
+ * - ai.cache.hit.ratio - hits / (hits + misses)
+ * - ai.cache.saved.latency - original AI latency of every answer served from the cache
+ */
+@Slf4j
+@Service
+public class ResponseCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final CachedResponseRepository cachedResponseRepository;
+    private final Scheduler databaseScheduler;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bypasses;
+    private final Timer savedLatency;
+
+    @Value("${ai.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ai.cache.persistent:false}")
+    private boolean persistent;
+
+    @Value("${ai.cache.include-nondeterministic:false}")
+    private boolean includeNondeterministic;
+
+    @Value("${ai.cache.max-entries:1000}")
+    private int maxEntries;
+
+    @Value("${ai.cache.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    private record Entry(String content, long latencyMs, long expiresAt) {}
+
+    /**
+     * Answers by cache key (least recently used entries are removed first)
+     */
+    private final Map<String, Entry> memory = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            });
+
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public ResponseCache(CachedResponseRepository cachedResponseRepository,
+                         @Qualifier("databaseScheduler") Scheduler databaseScheduler,
+                         MeterRegistry meterRegistry) {
+        this.cachedResponseRepository = cachedResponseRepository;
+        this.databaseScheduler = databaseScheduler;
+        this.hits = Counter.builder("ai.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("ai.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.bypasses = Counter.builder("ai.cache.requests").tag("result", "bypass").register(meterRegistry);
+        this.savedLatency = Timer.builder("ai.cache.saved.latency")
+                .description("AI call time avoided by answering from the cache")
+                .register(meterRegistry);
+        Gauge.builder("ai.cache.hit.ratio", this, ResponseCache::hitRatio).register(meterRegistry);
+        Gauge.builder("ai.cache.size", memory, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Cache key for a request, or null if this request must not use the cache
+     *
+     * @param model Model name
+     * @param temperature Sampling temperature of the request
+     * @param messages Every message sent, in order (role + content)
+     */
+    public String keyFor(String model, double temperature, List<Message> messages) {
+        if (!enabled) {
+            return null;
+        }
+        if (temperature > 0 && !includeNondeterministic) {
+            bypasses.increment();
+            return null;
+        }
+
+        MessageDigest digest = sha256();
+        update(digest, model);
+        for (Message message : messages) {
+            update(digest, message.getRole());
+            update(digest, normalize(message.getContent()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Cached answer for the first of several keys that has one, memory first,
+     * then the database (e.g. the same request for every model that could answer it)
+     *
+     * Counts one hit or miss, however many keys are tried.
+     * The database lookup blocks - call this off the WebClient event loop.
+     */
+    public Optional<String> get(List<String> keys) {
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            Entry entry = find(key, now);
+            if (entry != null) {
+                hits.increment();
+                savedLatency.record(entry.latencyMs(), TimeUnit.MILLISECONDS);
+                return Optional.of(entry.content());
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    private Entry find(String key, long now) {
+        Entry entry = memory.get(key);
+        if (entry != null && entry.expiresAt() <= now) {
+            memory.remove(key);
+            entry = null;
+        }
+
+        if (entry == null && persistent) {
+            entry = loadPersistent(key, now);
+            if (entry != null) {
+                memory.put(key, entry); // Promote to the memory tier
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Stores a fresh AI answer
+     *
+     * Safe to call from the event loop: the database write runs on the database scheduler.
+     *
+     * @param model Model that wrote the answer (the one its key was made with)
+     * @param latency How long the AI call took
+     */
+    public void put(String key, String model, String content, Duration latency) {
+        long latencyMs = latency.toMillis();
+        memory.put(key, new Entry(content, latencyMs,
+                System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(ttlMinutes)));
+
+        if (persistent) {
+            databaseScheduler.schedule(() -> {
+                try {
+                    cachedResponseRepository.save(
+                            new CachedResponse(key, model, content, latencyMs, LocalDateTime.now()));
+                } catch (DataAccessException e) {
+                    // e.g. another instance stored the same answer first - nothing lost
+                    log.debug("Could not store cached response: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    private Entry loadPersistent(String key, long now) {
+        try {
+            Optional<CachedResponse> stored = cachedResponseRepository.findById(key);
+            if (stored.isEmpty()) {
+                return null;
+            }
+            CachedResponse response = stored.get();
+            LocalDateTime expiry = response.getCreatedAt().plusMinutes(ttlMinutes);
+            if (expiry.isBefore(LocalDateTime.now())) {
+                cachedResponseRepository.deleteById(key);
+                return null;
+            }
+            long remaining = Duration.between(LocalDateTime.now(), expiry).toMillis();
+            return new Entry(response.getContent(), response.getLatencyMs(), now + remaining);
+        } catch (DataAccessException e) {
+            // The cache must never break chatting
+            log.warn("Response cache lookup failed: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    /**
+     * Trims, collapses runs of whitespace and lower-cases
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return WHITESPACE.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update((value != null ? value : "").getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0); // Separator, so "ab"+"c" != "a"+"bc"
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
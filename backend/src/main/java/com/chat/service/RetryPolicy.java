@@ -0,0 +1,295 @@
+package com.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retry Policy - Retries and hedges AI API calls
+ *
+ * Retry: a 429, a 5xx or a failed connection is tried again, up to
+ * ai.retry.max-attempts calls in total. The wait before retry n is random
+ * between 0 and min(max-delay, base-delay * 2^n) ("full jitter"), so clients
+ * that failed together don't all come back at the same moment. If the API
+ * sends Retry-After we wait at least that long - or give up right away when
+ * it asks for more than ai.retry.max-retry-after-ms.
+ * Timeouts are NOT retried: the caller already waited the full ai.api.timeout.
+ *
+ * Hedging (ai.hedge.enabled, off by default): if a call has no answer after
+ * the p95 latency of recent calls, a second identical call is sent. The first
+ * answer wins and the other call is cancelled. This cuts the slow tail when a
+ * few provider requests hang, at the price of ~5% extra calls.
+ *
+ * Metrics:
+ * - ai.retry.attempts{reason} - retries, by HTTP status or "connect"
+ * - ai.retry.exhausted - calls that still failed after the last retry
+ * - ai.hedge.requests{result=sent|won} - hedged calls sent / that answered first
+ * - ai.upstream.latency - time of successful calls (its p95 is the hedge delay)
+ */
+@Slf4j
+@Component
+public class RetryPolicy {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter exhaustedCounter;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Timer upstreamLatency;
+
+    // Total calls, including the first one (1 = no retries)
+    @Value("${ai.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${ai.retry.base-delay-ms:200}")
+    private long baseDelayMs;
+
+    @Value("${ai.retry.max-delay-ms:5000}")
+    private long maxDelayMs;
+
+    // A longer Retry-After fails the call at once instead of keeping the user waiting
+    @Value("${ai.retry.max-retry-after-ms:10000}")
+    private long maxRetryAfterMs;
+
+    @Value("${ai.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    // Never hedge earlier than this, even if p95 is lower
+    @Value("${ai.hedge.min-delay-ms:500}")
+    private long hedgeMinDelayMs;
+
+    // Successful calls needed before p95 is trusted
+    @Value("${ai.hedge.min-samples:20}")
+    private long hedgeMinSamples;
+
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public RetryPolicy(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.exhaustedCounter = Counter.builder("ai.retry.exhausted")
+                .description("AI calls that still failed after the last retry")
+                .register(meterRegistry);
+        this.hedgesSent = Counter.builder("ai.hedge.requests").tag("result", "sent").register(meterRegistry);
+        this.hedgesWon = Counter.builder("ai.hedge.requests").tag("result", "won").register(meterRegistry);
+        this.upstreamLatency = Timer.builder("ai.upstream.latency")
+                .description("Time of successful AI API calls")
+                .publishPercentiles(0.95)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a call with hedging and retries
+     *
+     * @param call Creates one attempt (called again for every retry and hedge)
+     * @return The first successful result, or the last error
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> hedged(call))
+                .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                    Throwable error = signal.failure();
+                    Duration delay = retryDelay(error, signal.totalRetries());
+                    if (delay == null) {
+                        return Mono.error(error);
+                    }
+                    log.warn("AI call failed ({}), retry {} in {}ms",
+                            error.getMessage(), signal.totalRetries() + 1, delay.toMillis());
+                    return Mono.delay(delay);
+                })));
+    }
+
+    /**
+     * Wait before the next retry, or null to give up
+     *
+     * @param retriesSoFar Retries already made (0 before the first retry)
+     */
+    Duration retryDelay(Throwable error, long retriesSoFar) {
+        String reason = retryReason(error);
+        if (reason == null) {
+            return null;
+        }
+        if (retriesSoFar + 1 >= maxAttempts) {
+            exhaustedCounter.increment();
+            return null;
+        }
+
+        long cap = Math.min(maxDelayMs, baseDelayMs << Math.min(retriesSoFar, 20));
+        long delayMs = ThreadLocalRandom.current().nextLong(cap + 1);
+
+        if (error instanceof AIApiException api && api.getRetryAfter() != null) {
+            long retryAfterMs = api.getRetryAfter().toMillis();
+            if (retryAfterMs > maxRetryAfterMs) {
+                exhaustedCounter.increment();
+                return null;
+            }
+            delayMs = Math.max(delayMs, retryAfterMs);
+        }
+
+        meterRegistry.counter("ai.retry.attempts", "reason", reason).increment();
+        return Duration.ofMillis(delayMs);
+    }
+
+    /**
+     * Metric tag for a retryable error, or null if the error is final
+     * (e.g. 400, bad API key, timeout, open circuit breaker)
+     */
+    private static String retryReason(Throwable error) {
+        if (error instanceof AIApiException api && api.isTransient()) {
+            return String.valueOf(api.getStatus());
+        }
+        if (error instanceof WebClientRequestException) {
+            return "connect"; // Connection refused or closed before a response
+        }
+        return null;
+    }
+
+    /**
+     * Runs one attempt, plus a hedge attempt if it is slower than usual
+     */
+    private <T> Mono<T> hedged(Supplier<Mono<T>> call) {
+        Duration delay = hedgeDelay();
+        if (delay == null) {
+            return timed(call);
+        }
+        return Mono.create(sink -> new HedgedCall<>(sink, call).start(delay));
+    }
+
+    /**
+     * Current p95 of successful calls, or null while hedging is off or there is too little data
+     */
+    private Duration hedgeDelay() {
+        if (!hedgeEnabled || upstreamLatency.count() < hedgeMinSamples) {
+            return null;
+        }
+        long p95Ms = 0;
+        for (ValueAtPercentile value : upstreamLatency.takeSnapshot().percentileValues()) {
+            p95Ms = (long) value.value(TimeUnit.MILLISECONDS);
+        }
+        return Duration.ofMillis(Math.max(hedgeMinDelayMs, p95Ms));
+    }
+
+    /**
+     * One attempt; successful ones are recorded in ai.upstream.latency
+     */
+    private <T> Mono<T> timed(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.get()
+                    .switchIfEmpty(Mono.error(() -> new NoSuchElementException("AI call returned nothing")))
+                    .doOnNext(result -> upstreamLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Parses a Retry-After header: seconds ("120") or an HTTP date
+     *
+     * @return The wait time, or null if the header is missing or invalid
+     */
+    public static Duration parseRetryAfter(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(header.trim())));
+        } catch (NumberFormatException e) {
+            // Not a number - try the date form
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration wait = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            return wait.isNegative() ? Duration.ZERO : wait;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A primary attempt and (after the hedge delay) a second one racing each other
+     *
+     * The first value wins and cancels everything else. An error only ends
+     * the call once no other attempt is running; an error before the hedge
+     * delay ends it immediately (the retry takes over from there).
+     */
+    private final class HedgedCall<T> {
+
+        private final MonoSink<T> sink;
+        private final Supplier<Mono<T>> call;
+        private final Disposable.Composite running = Disposables.composite();
+
+        private int pending;
+        private boolean done;
+        private Throwable firstError;
+
+        HedgedCall(MonoSink<T> sink, Supplier<Mono<T>> call) {
+            this.sink = sink;
+            this.call = call;
+        }
+
+        void start(Duration delay) {
+            sink.onDispose(running); // Cancels the losing attempt and the hedge timer
+            launch(false);
+            running.add(Mono.delay(delay).subscribe(tick -> launch(true)));
+        }
+
+        private void launch(boolean hedge) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                pending++;
+            }
+            if (hedge) {
+                hedgesSent.increment();
+                log.debug("AI call slower than p95, sending hedge request");
+            }
+            // Subscribed here, not by the caller - pass on its context (trace, ...) by hand
+            running.add(timed(call).contextWrite(sink.contextView()).subscribe(value -> succeed(value, hedge), this::fail));
+        }
+
+        private void succeed(T value, boolean hedge) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+            }
+            if (hedge) {
+                hedgesWon.increment();
+            }
+            sink.success(value);
+        }
+
+        private void fail(Throwable error) {
+            synchronized (this) {
+                if (firstError == null) {
+                    firstError = error;
+                }
+                if (done || --pending > 0) {
+                    return; // The other attempt may still answer
+                }
+                done = true;
+            }
+            sink.error(firstError);
+        }
+    }
+}
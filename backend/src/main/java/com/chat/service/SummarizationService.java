@@ -0,0 +1,184 @@
+package com.chat.service;
+
+import com.chat.model.ChatMessage;
+import com.chat.model.Conversation;
+import com.chat.model.ConversationSummary;
+import com.chat.model.Message;
+import com.chat.repository.ChatMessageRepository;
+import com.chat.repository.ConversationRepository;
+import com.chat.repository.ConversationSummaryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Summarization Service - Compresses long conversation histories
+ * 
+ * Once a conversation has more than ai.summary.trigger-messages messages
+ * that are not summarized yet, the oldest ones (all except the newest
+ * ai.summary.keep-recent) are folded into a stored ConversationSummary.
+ * ChatService then sends the summary plus the recent messages to the AI.
+ * 
+ * Runs in the background (@Async) after a chat turn is saved,
+ * so users never wait for it.
+ * 
+ * Metrics:
+ * - chat.summary.latency: time for the AI summary call
+ * - chat.summary.compression.ratio: original characters / summary characters
+ * - chat.summary.runs: runs by outcome (success / failure)
+ */
+@Slf4j
+@Service
+public class SummarizationService {
+    
+    private final ConversationRepository conversationRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ConversationSummaryRepository summaryRepository;
+    private final AIService aiService;
+    
+    private final Timer latencyTimer;
+    private final DistributionSummary compressionRatio;
+    private final Counter successCounter;
+    private final Counter failureCounter;
+    
+    // Conversations being summarized right now (never summarize one twice at once)
+    private final Set<Long> inProgress = ConcurrentHashMap.newKeySet();
+    
+    @Value("${ai.summary.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${ai.summary.trigger-messages:30}")
+    private int triggerMessages;
+    
+    @Value("${ai.summary.keep-recent:10}")
+    private int keepRecent;
+    
+    @Value("${ai.summary.max-batch:100}")
+    private int maxBatch;
+    
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public SummarizationService(ConversationRepository conversationRepository,
+                                ChatMessageRepository chatMessageRepository,
+                                ConversationSummaryRepository summaryRepository,
+                                AIService aiService,
+                                MeterRegistry meterRegistry) {
+        this.conversationRepository = conversationRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.summaryRepository = summaryRepository;
+        this.aiService = aiService;
+        this.latencyTimer = Timer.builder("chat.summary.latency")
+                .description("Time to summarize a batch of messages")
+                .register(meterRegistry);
+        this.compressionRatio = DistributionSummary.builder("chat.summary.compression.ratio")
+                .description("Original characters divided by summary characters")
+                .register(meterRegistry);
+        this.successCounter = Counter.builder("chat.summary.runs").tag("outcome", "success").register(meterRegistry);
+        this.failureCounter = Counter.builder("chat.summary.runs").tag("outcome", "failure").register(meterRegistry);
+    }
+    
+    /**
+     * Checks the settings at startup - a bad combination would make every
+     * summary run fail later, in the background
+     */
+    @PostConstruct
+    void validateSettings() {
+        if (!enabled) {
+            return;
+        }
+        if (keepRecent < 0 || maxBatch < 1) {
+            throw new IllegalStateException("ai.summary.keep-recent must be >= 0 and ai.summary.max-batch >= 1");
+        }
+        if (keepRecent >= triggerMessages) {
+            throw new IllegalStateException("ai.summary.keep-recent (" + keepRecent
+                    + ") must be smaller than ai.summary.trigger-messages (" + triggerMessages + ")");
+        }
+    }
+    
+    /**
+     * Summarizes a conversation in the background if it has grown enough
+     * 
+     * @param conversationId The conversation that just got new messages
+     */
+    @Async("summaryExecutor")
+    public void summarizeIfNeeded(Long conversationId) {
+        if (!enabled || !inProgress.add(conversationId)) {
+            return;
+        }
+        try {
+            conversationRepository.findById(conversationId).ifPresent(this::summarize);
+        } catch (Exception e) {
+            failureCounter.increment();
+            log.error("Error summarizing conversation {}: {}", conversationId, e.getMessage());
+        } finally {
+            inProgress.remove(conversationId);
+        }
+    }
+    
+    /**
+     * Folds the older unsummarized messages into the summary
+     */
+    private void summarize(Conversation conversation) {
+        ConversationSummary summary = summaryRepository.findByConversation(conversation)
+                .orElse(null);
+        long afterId = summary != null ? summary.getLastMessageId() : 0L;
+        
+        long unsummarized = chatMessageRepository.countByConversationAndIdGreaterThan(conversation, afterId);
+        if (unsummarized < triggerMessages) {
+            return;
+        }
+        
+        // Fold everything except the newest messages (those are still sent as-is)
+        int batchSize = (int) Math.min(unsummarized - keepRecent, maxBatch);
+        if (batchSize <= 0) {
+            return;
+        }
+        List<ChatMessage> batch = chatMessageRepository.findByConversationAndIdGreaterThanOrderByCreatedAtAscIdAsc(
+                conversation, afterId, PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        String previous = summary != null ? summary.getContent() : null;
+        List<Message> messages = batch.stream().map(ChatMessage::toMessage).collect(Collectors.toList());
+        long batchChars = messages.stream().mapToLong(m -> m.getContent().length()).sum();
+        
+        long start = System.nanoTime();
+        String newSummary = aiService.summarize(previous, messages);
+        latencyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        
+        if (summary == null) {
+            summary = new ConversationSummary();
+            summary.setConversation(conversation);
+        }
+        summary.setContent(newSummary);
+        summary.setLastMessageId(batch.get(batch.size() - 1).getId());
+        summary.setMessageCount(summary.getMessageCount() + batch.size());
+        summary.setSourceChars(summary.getSourceChars() + batchChars);
+        summaryRepository.save(summary);
+        
+        // What the AI reads now (summary) vs. what it would have read (old summary + raw messages)
+        long inputChars = batchChars + (previous != null ? previous.length() : 0);
+        compressionRatio.record((double) inputChars / Math.max(1, newSummary.length()));
+        successCounter.increment();
+        
+        log.info("Summarized {} messages of conversation {} ({} -> {} chars)",
+                batch.size(), conversation.getId(), inputChars, newSummary.length());
+    }
+}
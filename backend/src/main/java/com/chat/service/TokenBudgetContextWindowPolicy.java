@@ -0,0 +1,112 @@
+package com.chat.service;
+
+import com.chat.model.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sliding-window context policy with a token budget
+ * 
+ * Keeps the system prompt, the new user message, and as many of the most
+ * recent history messages as fit into ai.context.max-tokens.
+ * System messages at the start of the history (like a conversation summary)
+ * are always kept too.
+ * 
+ * Tokens are estimated (about 4 characters per token, plus a few tokens of
+ * per-message overhead) - close enough for budgeting without a tokenizer.
+ * Estimates are cached per message ID because stored messages never change.
+ */
+@Slf4j
+@Component
+public class TokenBudgetContextWindowPolicy implements ContextWindowPolicy {
+    
+    // Rough average for English text with GPT/Claude style tokenizers
+    private static final int CHARS_PER_TOKEN = 4;
+    
+    // Role name and separators added by the API for every message
+    private static final int TOKENS_PER_MESSAGE = 4;
+    
+    @Value("${ai.context.max-tokens:3000}")
+    private int maxTokens;
+    
+    @Value("${ai.context.max-messages:50}")
+    private int maxMessages;
+    
+    @Value("${ai.context.token-cache-size:10000}")
+    private int tokenCacheSize;
+    
+    /**
+     * Token estimates by message ID (least recently used entries are removed first)
+     */
+    private final Map<Long, Integer> tokenCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                    return size() > tokenCacheSize;
+                }
+            });
+    
+    @Override
+    public int maxHistoryMessages() {
+        return maxMessages;
+    }
+    
+    @Override
+    public List<Message> selectHistory(String systemPrompt, List<Message> history, String userMessage) {
+        if (history == null || history.isEmpty()) {
+            return List.of();
+        }
+        
+        int remaining = maxTokens - estimateTokens(systemPrompt) - estimateTokens(userMessage);
+        
+        // Leading system messages (summary) are pinned
+        int pinned = 0;
+        while (pinned < history.size() && "system".equals(history.get(pinned).getRole())) {
+            remaining -= estimateTokens(history.get(pinned));
+            pinned++;
+        }
+        
+        // Walk backwards from the newest message until the budget is used up
+        int start = history.size();
+        while (start > pinned) {
+            int tokens = estimateTokens(history.get(start - 1));
+            if (tokens > remaining) {
+                break;
+            }
+            remaining -= tokens;
+            start--;
+        }
+        
+        if (start > pinned) {
+            log.debug("Context window: sending {} of {} history messages", history.size() - start, history.size() - pinned);
+        }
+        List<Message> selected = new ArrayList<>(history.subList(0, pinned));
+        selected.addAll(history.subList(start, history.size()));
+        return selected;
+    }
+    
+    /**
+     * Estimated tokens for a message, cached by message ID
+     */
+    int estimateTokens(Message message) {
+        if (message.getId() == null) {
+            return estimateTokens(message.getContent());
+        }
+        return tokenCache.computeIfAbsent(message.getId(), id -> estimateTokens(message.getContent()));
+    }
+    
+    /**
+     * Estimated tokens for a piece of text
+     */
+    static int estimateTokens(String text) {
+        int length = text != null ? text.length() : 0;
+        return TOKENS_PER_MESSAGE + (length + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
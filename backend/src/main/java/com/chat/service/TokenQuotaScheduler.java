@@ -0,0 +1,422 @@
+package com.chat.service;
+
+import com.chat.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Token Quota Scheduler - Keeps AI calls within the provider's tokens-per-minute limit
+ *
+ * Before a call goes upstream it reserves its estimated tokens (prompt +
+ * max_tokens) from a budget that refills at ai.quota.tokens-per-minute.
+ * When the answer arrives, the reservation is corrected with the real
+ * "usage" the API reports, so unused completion tokens go back to the budget.
+ *
+ * When the budget is used up, requests wait in a queue. The queue is fair
+ * between users (weighted fair queuing): each request gets a "finish tag" =
+ * when its user's previous requests end + its tokens / the user's weight,
+ * and the smallest tag goes first. A user sending 50 requests at once
+ * therefore can't make everyone else wait behind all 50.
+ *
+ * - Queue full (ai.quota.max-queued) or waited longer than ai.quota.max-wait-ms:
+ *   QuotaExceededException (the chat shows the "busy" message)
+ * - ai.quota.tokens-per-minute=0 (default) turns the scheduler off
+ *
+ * Every waiting request moves once from QUEUED to ADMITTED (got its tokens)
+ * or to CANCELLED (timed out, or the client went away), with a
+ * compare-and-set - so budget handed to a request at the moment it gives up
+ * always goes back to the budget instead of being lost.
+ *
+ * Metrics:
+ * - ai.quota.queue.depth - requests waiting for budget
+ * - ai.quota.wait - time from asking to getting budget
+ * - ai.quota.rejected{reason=queue_full|timeout}
+ * - ai.quota.tokens.available - current budget
+ * - ai.quota.tokens.used - tokens used according to the API
+ */
+@Slf4j
+@Service
+public class TokenQuotaScheduler {
+
+    /**
+     * A user (or background job) sharing the budget, with its weight
+     * (2 = twice the share of a user with weight 1 when both are waiting)
+     */
+    public record Flow(String key, double weight) {}
+
+    private final Timer waitTimer;
+    private final Counter rejectedFull;
+    private final Counter rejectedTimeout;
+    private final Counter tokensUsed;
+
+    @Value("${ai.quota.tokens-per-minute:0}")
+    private long tokensPerMinute;
+
+    @Value("${ai.quota.max-queued:500}")
+    private int maxQueued;
+
+    @Value("${ai.quota.max-wait-ms:20000}")
+    private long maxWaitMs;
+
+    // The guest user is shared by everyone without a login
+    @Value("${ai.quota.guest-weight:1}")
+    private double guestWeight;
+
+    // Background summaries get a smaller share than users
+    @Value("${ai.quota.summary-weight:0.5}")
+    private double summaryWeight;
+
+    // Budget state - guarded by "this"
+    private double capacity;
+    private double tokensPerNano;
+    private double available;
+    private long lastRefill;
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparingDouble((Waiter w) -> w.finish).thenComparingLong(w -> w.seq));
+    private final Map<String, Double> lastFinish = new HashMap<>();
+    private double virtualTime;
+    private long seq;
+    private boolean timerPending;
+
+    /**
+     * Constructor - Spring automatically injects dependencies
+     */
+    @Autowired
+    public TokenQuotaScheduler(MeterRegistry meterRegistry) {
+        this.waitTimer = Timer.builder("ai.quota.wait")
+                .description("Time AI requests waited for token budget")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.rejectedFull = Counter.builder("ai.quota.rejected").tag("reason", "queue_full").register(meterRegistry);
+        this.rejectedTimeout = Counter.builder("ai.quota.rejected").tag("reason", "timeout").register(meterRegistry);
+        this.tokensUsed = Counter.builder("ai.quota.tokens.used").register(meterRegistry);
+        Gauge.builder("ai.quota.queue.depth", queue, PriorityQueue::size).register(meterRegistry);
+        Gauge.builder("ai.quota.tokens.available", this, TokenQuotaScheduler::availableTokens).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        capacity = tokensPerMinute; // Up to one minute of tokens at once
+        tokensPerNano = tokensPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        available = capacity;
+        lastRefill = System.nanoTime();
+        if (tokensPerMinute > 0) {
+            log.info("AI token quota: {} tokens/minute, max {} queued", tokensPerMinute, maxQueued);
+        }
+    }
+
+    /**
+     * Fair-queuing flow of a chat user
+     */
+    public Flow flowFor(User user) {
+        if (user == null || user.getId() == null) {
+            return new Flow("anonymous", guestWeight);
+        }
+        double weight = UserService.GUEST_USERNAME.equals(user.getUsername()) ? guestWeight : 1;
+        return new Flow("user:" + user.getId(), weight);
+    }
+
+    /**
+     * Flow of background conversation summaries
+     */
+    public Flow summaryFlow() {
+        return new Flow("summaries", summaryWeight);
+    }
+
+    /**
+     * Runs a call once its estimated tokens fit into the budget
+     *
+     * @param promptTokens Estimated prompt tokens
+     * @param maxCompletionTokens max_tokens of the request
+     * @param usedTokens Real tokens used according to the result (-1 = unknown, keep the estimate)
+     */
+    public <T> Mono<T> submit(Flow flow, long promptTokens, long maxCompletionTokens,
+                              Supplier<Mono<T>> call, ToLongFunction<T> usedTokens) {
+        if (tokensPerMinute <= 0) {
+            return Mono.defer(call);
+        }
+        return acquire(flow, promptTokens + maxCompletionTokens)
+                .flatMap(permit -> call.get()
+                        .doOnSuccess(result -> permit.settle(result != null ? usedTokens.applyAsLong(result) : -1))
+                        .doOnError(e -> permit.settle(0)) // Failed calls are not billed
+                        .doOnCancel(() -> permit.settle(-1)));
+    }
+
+    /**
+     * Like submit, for a streamed answer
+     *
+     * Streams don't report usage, so completion tokens are estimated from
+     * the streamed text (about 4 characters per token).
+     */
+    public Flux<String> submitStream(Flow flow, long promptTokens, long maxCompletionTokens,
+                                     Supplier<Flux<String>> call) {
+        if (tokensPerMinute <= 0) {
+            return Flux.defer(call);
+        }
+        return acquire(flow, promptTokens + maxCompletionTokens)
+                .flatMapMany(permit -> {
+                    long[] chars = {0};
+                    return call.get()
+                            .doOnNext(delta -> chars[0] += delta.length())
+                            .doFinally(signal -> permit.settle(signal == SignalType.ON_ERROR && chars[0] == 0
+                                    ? 0
+                                    : promptTokens + (chars[0] + 3) / 4));
+                });
+    }
+
+    /**
+     * Waits (without blocking a thread) until the tokens can be reserved
+     *
+     * The permit is only passed on if the subscriber claims it first; if the
+     * subscriber cancelled instead, the cancel handler claims it and gives the
+     * tokens back.
+     */
+    private Mono<Permit> acquire(Flow flow, long tokens) {
+        Mono<Permit> admission = Mono.create(sink -> {
+            long now = System.nanoTime();
+            double cost = Math.min(tokens, capacity); // A huge request must not wait forever
+            Waiter waiter = new Waiter(sink, cost, now);
+            // Registered before the waiter can be admitted, so no admission is missed
+            sink.onCancel(() -> cancel(waiter));
+            boolean admitted = false;
+            boolean queued = false;
+            synchronized (this) {
+                refill(now);
+                if (queue.isEmpty() && available >= cost) {
+                    waiter.permit = new Permit(cost);
+                    admitted = waiter.state.compareAndSet(Waiter.QUEUED, Waiter.ADMITTED);
+                    if (admitted) {
+                        available -= cost;
+                    }
+                } else if (queue.size() < maxQueued && waiter.state.get() == Waiter.QUEUED) {
+                    enqueue(flow, waiter);
+                    queued = true;
+                }
+            }
+
+            if (admitted) {
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                sink.success(waiter.permit);
+            } else if (queued) {
+                waiter.timer = Schedulers.parallel().schedule(() -> timeOut(waiter), maxWaitMs, TimeUnit.MILLISECONDS);
+                drain();
+            } else if (waiter.state.compareAndSet(Waiter.QUEUED, Waiter.CANCELLED)) {
+                rejectedFull.increment();
+                sink.error(new QuotaExceededException("Too many AI requests waiting for token budget"));
+            }
+        });
+        return admission.filter(Permit::claim);
+    }
+
+    private void enqueue(Flow flow, Waiter waiter) {
+        waiter.start = Math.max(virtualTime, lastFinish.getOrDefault(flow.key(), 0.0));
+        waiter.finish = waiter.start + waiter.cost / Math.max(flow.weight(), 0.01);
+        waiter.seq = seq++;
+        lastFinish.put(flow.key(), waiter.finish);
+        queue.add(waiter);
+    }
+
+    /**
+     * The client went away: leave the queue, or give back tokens it was just given
+     */
+    private void cancel(Waiter waiter) {
+        if (waiter.state.compareAndSet(Waiter.QUEUED, Waiter.CANCELLED)) {
+            leaveQueue(waiter);
+        } else if (waiter.state.get() == Waiter.ADMITTED) {
+            waiter.permit.release();
+        }
+    }
+
+    /**
+     * Waited longer than max-wait-ms - unless it was admitted first
+     */
+    private void timeOut(Waiter waiter) {
+        if (waiter.state.compareAndSet(Waiter.QUEUED, Waiter.CANCELLED)) {
+            leaveQueue(waiter);
+            rejectedTimeout.increment();
+            waiter.sink.error(new QuotaExceededException("Timed out waiting for AI token budget"));
+        }
+    }
+
+    private void leaveQueue(Waiter waiter) {
+        stopTimer(waiter);
+        synchronized (this) {
+            queue.remove(waiter);
+        }
+    }
+
+    private static void stopTimer(Waiter waiter) {
+        Disposable timer = waiter.timer; // null if admitted before the timer was set (it then does nothing)
+        if (timer != null) {
+            timer.dispose();
+        }
+    }
+
+    /**
+     * Hands out budget to waiting requests, smallest finish tag first
+     *
+     * If the first one doesn't fit yet, a timer calls drain() again when it will.
+     */
+    private void drain() {
+        List<Waiter> admitted = new ArrayList<>();
+        long delayNanos = -1;
+        long now = System.nanoTime();
+        synchronized (this) {
+            refill(now);
+            while (!queue.isEmpty()) {
+                Waiter head = queue.peek();
+                if (available < head.cost) {
+                    if (!timerPending) {
+                        timerPending = true;
+                        delayNanos = (long) Math.ceil((head.cost - available) / tokensPerNano);
+                    }
+                    break;
+                }
+                queue.poll();
+                head.permit = new Permit(head.cost);
+                if (!head.state.compareAndSet(Waiter.QUEUED, Waiter.ADMITTED)) {
+                    continue; // Cancelled a moment ago - it doesn't get (or use) tokens
+                }
+                available -= head.cost;
+                virtualTime = head.start;
+                admitted.add(head);
+            }
+            if (queue.isEmpty()) {
+                // Nobody waiting - fairness history no longer matters
+                lastFinish.clear();
+                virtualTime = 0;
+            }
+        }
+
+        for (Waiter waiter : admitted) {
+            stopTimer(waiter);
+            waitTimer.record(now - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+            waiter.sink.success(waiter.permit);
+        }
+        if (delayNanos >= 0) {
+            Schedulers.parallel().schedule(() -> {
+                synchronized (this) {
+                    timerPending = false;
+                }
+                drain();
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void refill(long now) {
+        available = Math.min(capacity, available + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+    private synchronized double availableTokens() {
+        return available;
+    }
+
+    /**
+     * A request waiting in the queue
+     */
+    private static final class Waiter {
+
+        private static final int QUEUED = 0;
+        private static final int ADMITTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private volatile Permit permit;
+        private volatile Disposable timer;
+        private final MonoSink<Permit> sink;
+        private final double cost;
+        private final long enqueuedAt;
+
+        // Fair-queuing tags - set when queued (guarded by the scheduler)
+        private double start;
+        private double finish;
+        private long seq;
+
+        private Waiter(MonoSink<Permit> sink, double cost, long enqueuedAt) {
+            this.sink = sink;
+            this.cost = cost;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * Reserved tokens of one admitted request
+     */
+    private final class Permit {
+
+        private final double reserved;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Permit(double reserved) {
+            this.reserved = reserved;
+        }
+
+        /**
+         * Takes the permit for the call (false if release() got it first)
+         */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        /**
+         * Gives the tokens back if nobody claimed the permit (the requester went away)
+         */
+        void release() {
+            if (claim()) {
+                settle(0);
+            }
+        }
+
+        /**
+         * Replaces the reservation with the real usage (once)
+         *
+         * @param used Real tokens, or -1 to keep the reservation
+         */
+        void settle(long used) {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            if (used < 0) {
+                tokensUsed.increment(reserved);
+                return;
+            }
+            tokensUsed.increment(used);
+            boolean waiting;
+            synchronized (TokenQuotaScheduler.this) {
+                // Below 0 if the estimate was too low - later requests wait a bit longer
+                available = Math.min(capacity, available + reserved - used);
+                waiting = !queue.isEmpty();
+            }
+            if (waiting) {
+                drain();
+            }
+        }
+    }
+}
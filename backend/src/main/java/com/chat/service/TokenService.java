@@ -0,0 +1,156 @@
+package com.chat.service;
+
+import com.chat.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Token Service - Issues and checks signed login tokens
+ *
+ * A token is "payload.signature", both Base64url encoded:
+ * - payload = userId:username:expiresAt (seconds since 1970)
+ * - signature = HMAC-SHA256 of the payload with a server-side key
+ *
+ * Checking a token only needs the key: no database query and no BCrypt,
+ * so it is cheap enough to do on every request. BCrypt is only used once,
+ * when the user logs in.
+ */
+@Slf4j
+@Service
+public class TokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+
+    // Mac objects are not thread-safe, so every thread keeps its own
+    private final ThreadLocal<Mac> macs;
+
+    /**
+     * What a valid token says about the caller
+     */
+    public record Claims(Long userId, String username, long expiresAt) {
+
+        /**
+         * A User with only ID and username set - enough to own conversations
+         * and to look them up, without loading the user from the database
+         */
+        public User toUser() {
+            User user = new User();
+            user.setId(userId);
+            user.setUsername(username);
+            return user;
+        }
+    }
+
+    /**
+     * @param secretRequired true (production profile) = refuse to start without auth.token.secret
+     */
+    public TokenService(@Value("${auth.token.secret:}") String secret,
+                        @Value("${auth.token.ttl-minutes:720}") long ttlMinutes,
+                        @Value("${auth.token.secret-required:false}") boolean secretRequired) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            if (secretRequired) {
+                throw new IllegalStateException(
+                        "auth.token.secret is not set - set AUTH_TOKEN_SECRET to a long random value");
+            }
+            // Tokens stop working on restart and aren't shared between instances (fine for development)
+            log.warn("auth.token.secret is not set - using a random key");
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttlSeconds = ttlMinutes * 60;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Creates a token for a user who just logged in
+     */
+    public String issue(User user) {
+        long expiresAt = System.currentTimeMillis() / 1000 + ttlSeconds;
+        String payload = user.getId() + ":" + user.getUsername() + ":" + expiresAt;
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        return ENCODER.encodeToString(payloadBytes) + "." + ENCODER.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * Checks a token
+     *
+     * @return The claims, or null if the token is malformed, forged or expired
+     */
+    public Claims verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            return null;
+        }
+
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        // Constant-time comparison, so the signature can't be guessed byte by byte
+        if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            return null;
+        }
+
+        // userId:username:expiresAt - the username may contain ':'
+        String payload = new String(payloadBytes, StandardCharsets.UTF_8);
+        int first = payload.indexOf(':');
+        int last = payload.lastIndexOf(':');
+        if (first <= 0 || last <= first) {
+            return null;
+        }
+        try {
+            long expiresAt = Long.parseLong(payload.substring(last + 1));
+            if (expiresAt < System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            return new Claims(Long.parseLong(payload.substring(0, first)),
+                    payload.substring(first + 1, last), expiresAt);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * How long new tokens are valid
+     */
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -2,11 +2,20 @@ package com.chat.service;
 
 import com.chat.model.User;
 import com.chat.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -17,6 +26,10 @@ import java.util.Optional;
  * - User login
  * - Password encryption
  * - User validation
+ * - A small cache of users by username, so the lookup that every chat,
+ *   history and conversation request makes usually doesn't hit the database
+ *   (it stores a read-only snapshot; every caller gets its own User copy,
+ *   so one request thread never sees another one's changes)
  * 
  * @Service - Marks this as a service component
  */
@@ -24,16 +37,74 @@ import java.util.Optional;
 @Service
 public class UserService {
     
+    // Shared account used until the frontend sends real users
+    public static final String GUEST_USERNAME = "guest";
+    
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    
+    @Value("${chat.user-cache.max-size:1000}")
+    private int cacheMaxSize;
+    
+    // How long a cached user is trusted before it is read again
+    @Value("${chat.user-cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+    
+    /**
+     * Snapshot of a user - immutable, so request threads can share it safely
+     */
+    private record CachedUser(Long id, String username, String email, String password,
+                              LocalDateTime createdAt, LocalDateTime updatedAt, long expiresAt) {
+        
+        static CachedUser of(User user, long expiresAt) {
+            return new CachedUser(user.getId(), user.getUsername(), user.getEmail(), user.getPassword(),
+                    user.getCreatedAt(), user.getUpdatedAt(), expiresAt);
+        }
+        
+        /**
+         * A new (detached) User for the caller
+         */
+        User toUser() {
+            return new User(id, username, email, password, createdAt, updatedAt);
+        }
+    }
+    
+    /**
+     * Users by username (least recently used entries are removed first)
+     */
+    private final Map<String, CachedUser> userCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                    return size() > cacheMaxSize;
+                }
+            });
     
     /**
      * Constructor - Spring automatically injects dependencies
      */
     @Autowired
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordHashingService passwordHashingService,
+                       MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.cacheHits = Counter.builder("chat.user.cache").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("chat.user.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("chat.user.cache.size", userCache, Map::size).register(meterRegistry);
+    }
+    
+    /**
+     * Creates the guest user once at startup
+     * 
+     * Before, the first requests all tried to create it at the same time and
+     * some failed on the unique username.
+     */
+    @PostConstruct
+    public void init() {
+        getGuestUser();
     }
     
     /**
@@ -59,10 +130,10 @@ public class UserService {
         User user = new User();
         user.setUsername(username);
         user.setEmail(email);
-        user.setPassword(passwordEncoder.encode(password)); // Encrypt password
+        user.setPassword(passwordHashingService.encode(password)); // Encrypt password (bounded pool)
         
         // Save to database
-        User savedUser = userRepository.save(user);
+        User savedUser = save(user);
         log.info("User registered: {}", username);
         
         return savedUser;
@@ -73,15 +144,27 @@ public class UserService {
      * 
      * @param username Username
      * @param password Plain text password
+     * If the stored hash uses an older BCrypt strength, it is replaced with
+     * a hash at the current strength (only possible now, while we know the password).
+     * 
      * @return User if credentials are valid, null otherwise
+     * @throws java.util.concurrent.RejectedExecutionException if too many logins are in progress
      */
     public User authenticateUser(String username, String password) {
-        Optional<User> userOpt = userRepository.findByUsername(username);
+        Optional<User> userOpt = findByUsername(username);
         
         if (userOpt.isPresent()) {
             User user = userOpt.get();
             // Check if password matches (compares encrypted passwords)
-            if (passwordEncoder.matches(password, user.getPassword())) {
+            String hash = passwordHashingService.matchesAndUpgrade(password, user.getPassword());
+            if (hash != null) {
+                if (!hash.equals(user.getPassword())) {
+                    // Change the stored user, not a copy that may be out of date
+                    User stored = userRepository.findById(user.getId()).orElseThrow();
+                    stored.setPassword(hash);
+                    user = save(stored);
+                    log.info("Upgraded password hash strength for user: {}", username);
+                }
                 log.info("User authenticated: {}", username);
                 return user;
             }
@@ -92,10 +175,69 @@ public class UserService {
     }
     
     /**
-     * Find user by username
+     * Find user by username (cached)
+     * 
+     * Unknown usernames are not cached, so a user registered on another
+     * instance is found right away.
      */
     public Optional<User> findByUsername(String username) {
-        return userRepository.findByUsername(username);
+        CachedUser cached = userCache.get(username);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            cacheHits.increment();
+            return Optional.of(cached.toUser());
+        }
+        
+        cacheMisses.increment();
+        Optional<User> user = userRepository.findByUsername(username);
+        user.ifPresentOrElse(this::cache, () -> userCache.remove(username));
+        return user;
+    }
+    
+    /**
+     * The shared guest user, created if it doesn't exist yet
+     */
+    public User getGuestUser() {
+        return findByUsername(GUEST_USERNAME).orElseGet(this::createGuestUser);
+    }
+    
+    private synchronized User createGuestUser() {
+        Optional<User> existing = findByUsername(GUEST_USERNAME);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        try {
+            return registerUser(GUEST_USERNAME, "guest@example.com", "guest123");
+        } catch (IllegalArgumentException | DataIntegrityViolationException e) {
+            // Another instance sharing the database created it first
+            return userRepository.findByUsername(GUEST_USERNAME).orElseThrow();
+        }
+    }
+    
+    /**
+     * Saves a user and refreshes the cached copy
+     * 
+     * Every change to a user must go through here, so the cache is never stale.
+     */
+    public User save(User user) {
+        if (user.getId() != null) {
+            // The username itself may have changed - drop any entry pointing at this user
+            userCache.values().removeIf(cached -> user.getId().equals(cached.id()));
+        }
+        User saved = userRepository.save(user);
+        cache(saved);
+        return saved;
+    }
+    
+    /**
+     * Removes a user from the cache (e.g. after changing it outside this service)
+     */
+    public void evict(String username) {
+        userCache.remove(username);
+    }
+    
+    private void cache(User user) {
+        long expiresAt = System.currentTimeMillis() + cacheTtlSeconds * 1000;
+        userCache.put(user.getUsername(), CachedUser.of(user, expiresAt));
     }
     
     /**
@@ -0,0 +1,154 @@
+package com.chat.service;
+
+import com.chat.config.AIRouterProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AI Router Tests - failover, ejection and concurrency limits with two routes
+ *
+ * Each route is its own StubAIServer, so the tests can see which route got a call.
+ */
+class AIRouterTest {
+
+    private static final StubAIServer STUB_A = new StubAIServer(0);
+    private static final StubAIServer STUB_B = new StubAIServer(0);
+
+    private final WebClient webClient = WebClient.create();
+
+    private MeterRegistry meterRegistry;
+    private AIRouterProperties properties;
+
+    @AfterAll
+    static void stopStubs() {
+        STUB_A.close();
+        STUB_B.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        STUB_A.reset();
+        STUB_B.reset();
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new AIRouterProperties();
+        properties.getRoutes().add(route("a", STUB_A, "model-a"));
+        properties.getRoutes().add(route("b", STUB_B, "model-b"));
+    }
+
+    private static AIRouterProperties.Route route(String name, StubAIServer stub, String model) {
+        AIRouterProperties.Route route = new AIRouterProperties.Route();
+        route.setName(name);
+        route.setUrl(stub.url());
+        route.setKey("test-key");
+        route.setModel(model);
+        return route;
+    }
+
+    private AIRouter newRouter() {
+        return new AIRouter(properties, meterRegistry, "http://unused", "unused", "unused");
+    }
+
+    /**
+     * Sends a request to the route (HTTP errors fail the call)
+     */
+    private Mono<String> send(AIRouter.Route route) {
+        return webClient.post().uri(route.getUrl()).bodyValue("{}").retrieve().bodyToMono(String.class);
+    }
+
+    private AIRouter.RouteStatus status(AIRouter router, String name) {
+        return router.status().stream().filter(route -> route.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void failedCallFailsOverToTheOtherRoute() {
+        AIRouter router = newRouter();
+        STUB_A.setStatus(503);
+
+        String answer = router.call("a", this::send).block();
+
+        assertThat(answer).contains("Stub answer 1");
+        assertThat(STUB_A.hits()).isEqualTo(1);
+        assertThat(STUB_B.hits()).isEqualTo(1);
+        assertThat(meterRegistry.get("ai.route.failovers").tag("from", "a").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void routeIsEjectedAfterThreeFailures() {
+        AIRouter router = newRouter();
+        STUB_A.setStatus(503);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(status(router, "a").ejected()).isFalse();
+            router.call("a", this::send).block();
+        }
+        assertThat(status(router, "a").ejected()).isTrue();
+        assertThat(meterRegistry.get("ai.route.ejected").tag("route", "a").gauge().value()).isEqualTo(1);
+
+        // Even when asked for, the ejected route is skipped
+        router.call("a", this::send).block();
+        assertThat(STUB_A.hits()).isEqualTo(3);
+        assertThat(STUB_B.hits()).isEqualTo(4);
+    }
+
+    @Test
+    void maxConcurrentIsEnforced() {
+        properties.getRoutes().forEach(route -> route.setMaxConcurrent(1));
+        AIRouter router = newRouter();
+        STUB_A.setLatencyMs(1000);
+        STUB_B.setLatencyMs(1000);
+
+        // Both routes take their one call (the slot is taken on subscribe)
+        List<Mono<String>> running = List.of(
+                router.call(null, this::send).cache(),
+                router.call(null, this::send).cache());
+        running.forEach(Mono::subscribe);
+
+        assertThatThrownBy(() -> router.call(null, this::send).block())
+                .isInstanceOf(NoRouteAvailableException.class);
+
+        running.forEach(Mono::block);
+        assertThat(STUB_A.maxConcurrent()).isEqualTo(1);
+        assertThat(STUB_B.maxConcurrent()).isEqualTo(1);
+        assertThat(router.call(null, this::send).block()).contains("Stub answer");
+    }
+
+    @Test
+    void cachedAnswerBelongsToTheRouteThatServedIt() {
+        AIRouter router = newRouter();
+        ResponseCache responseCache = new ResponseCache(null, Schedulers.immediate(), meterRegistry);
+        ReflectionTestUtils.setField(responseCache, "enabled", true);
+        ReflectionTestUtils.setField(responseCache, "maxEntries", 100);
+        ReflectionTestUtils.setField(responseCache, "ttlMinutes", 60L);
+        AIService aiService = new AIService(WebClient.builder(), new TokenBudgetContextWindowPolicy(), responseCache,
+                meterRegistry, CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(),
+                new RetryPolicy(meterRegistry), router, new TokenQuotaScheduler(meterRegistry));
+        ReflectionTestUtils.setField(aiService, "timeout", 5000);
+        ReflectionTestUtils.setField(aiService, "appUrl", "http://localhost");
+        STUB_A.setStatus(503);
+
+        // Asked for route a, answered by route b (model-b) after failover
+        assertThat(aiService.getAIResponse("Hi", List.of(), "a", null)).isEqualTo("Stub answer 1");
+
+        // Cached for model-b: route b gets it from the cache...
+        assertThat(aiService.getAIResponse("Hi", List.of(), "b", null)).isEqualTo("Stub answer 1");
+        assertThat(STUB_B.hits()).isEqualTo(1);
+
+        // ...route a (model-a) has no cached answer and asks again
+        assertThat(aiService.getAIResponse("Hi", List.of(), "a", null)).isEqualTo("Stub answer 2");
+        assertThat(STUB_A.hits()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,156 @@
+package com.chat.service;
+
+import com.chat.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AI Service Coalescing Tests - identical requests in flight share one upstream call
+ *
+ * Runs against StubAIServer, which counts the requests it gets.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:chat-coalescing;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.show-sql=false",
+        "ai.coalesce.enabled=true",
+        "ai.cache.enabled=false",
+        "management.tracing.sampling.probability=0"
+})
+class AIServiceCoalescingTest {
+
+    private static final int CALLERS = 20;
+
+    private static final StubAIServer STUB = new StubAIServer(0);
+
+    @DynamicPropertySource
+    static void aiApi(DynamicPropertyRegistry registry) {
+        registry.add("ai.api.url", STUB::url);
+        registry.add("ai.api.key", () -> "test-key");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STUB.close();
+    }
+
+    @Autowired
+    private AIService aiService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User guest;
+
+    @BeforeEach
+    void setUp() {
+        STUB.reset();
+        guest = userService.getGuestUser();
+    }
+
+    private double coalesced() {
+        return meterRegistry.get("ai.requests.coalesced").counter().count();
+    }
+
+    /**
+     * Sends the same question from CALLERS threads at once
+     */
+    private List<String> askAtOnce(String question) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> answers = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                answers.add(callers.submit(() -> {
+                    start.await();
+                    return aiService.getAIResponse(question, List.of(), null, guest);
+                }));
+            }
+            start.countDown();
+
+            List<String> results = new ArrayList<>();
+            for (Future<String> answer : answers) {
+                results.add(answer.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void identicalRequestsInFlightShareOneUpstreamCall() throws Exception {
+        STUB.setLatencyMs(2000);
+        double coalescedBefore = coalesced();
+
+        List<String> answers = askAtOnce("What is dependency injection?");
+
+        assertThat(STUB.hits()).isEqualTo(1);
+        assertThat(answers).hasSize(CALLERS).containsOnly("Stub answer 1");
+        assertThat(coalesced() - coalescedBefore).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void errorReachesEveryWaitingCaller() throws Exception {
+        // 400 is not retried, so one upstream call fails for everyone
+        STUB.setLatencyMs(2000);
+        STUB.setStatus(400);
+
+        List<String> answers = askAtOnce("What is a bean?");
+
+        assertThat(STUB.hits()).isEqualTo(1);
+        assertThat(answers).hasSize(CALLERS).allMatch(answer -> answer.startsWith("I apologize"));
+    }
+
+    @Test
+    void timeoutReachesEveryWaitingCallerAndIsNotKept() throws Exception {
+        aiService.getAIResponse("Warm-up", List.of(), null, guest); // Connection ready before the short timeout
+        STUB.reset();
+        Object timeout = ReflectionTestUtils.getField(aiService, "timeout");
+        ReflectionTestUtils.setField(aiService, "timeout", 500); // ai.api.timeout, below the stub latency
+        try {
+            STUB.setLatencyMs(2000);
+
+            List<String> answers = askAtOnce("What is a proxy?");
+
+            // Timeouts are not retried, so one upstream call timed out for everyone
+            assertThat(STUB.hits()).isEqualTo(1);
+            assertThat(answers).hasSize(CALLERS)
+                    .allMatch(answer -> answer.startsWith("I apologize") && answer.contains("500ms"));
+            assertThat((Map<?, ?>) ReflectionTestUtils.getField(aiService, "inFlight")).isEmpty();
+        } finally {
+            ReflectionTestUtils.setField(aiService, "timeout", timeout);
+        }
+    }
+
+    @Test
+    void finishedCallIsNotShared() {
+        String first = aiService.getAIResponse("What is a repository?", List.of(), null, guest);
+        String second = aiService.getAIResponse("What is a repository?", List.of(), null, guest);
+
+        // Nothing is kept after a call ends - the second request goes upstream again
+        assertThat(STUB.hits()).isEqualTo(2);
+        assertThat(first).isEqualTo("Stub answer 1");
+        assertThat(second).isEqualTo("Stub answer 2");
+    }
+}
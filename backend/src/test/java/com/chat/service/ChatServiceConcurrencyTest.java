@@ -0,0 +1,93 @@
+package com.chat.service;
+
+import com.chat.model.ChatResponse;
+import com.chat.model.User;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chat Service Concurrency Tests - the AI call must not hold a database connection
+ *
+ * 200 users chat at once with only 2 pooled connections, and every AI call
+ * takes 10 seconds. If a connection were held while waiting for the AI, the
+ * other requests would time out waiting for one (after 8 seconds - that long
+ * because 200 users' short transactions also queue for the 2 connections).
+ * The bulkhead and the route's concurrency limit are raised above 200, so
+ * they don't turn calls away first.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:chat-concurrency;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=8000",
+        "spring.jpa.show-sql=false",
+        "ai.summary.enabled=false",
+        "ai.coalesce.enabled=false",
+        "resilience4j.bulkhead.instances.aiService.max-concurrent-calls=250",
+        "ai.router.default-max-concurrent=250",
+        "management.tracing.sampling.probability=0"
+})
+class ChatServiceConcurrencyTest {
+
+    private static final int USERS = 200;
+    private static final int POOL_SIZE = 2;
+
+    private static final StubAIServer STUB = new StubAIServer(10_000);
+
+    @DynamicPropertySource
+    static void aiApi(DynamicPropertyRegistry registry) {
+        registry.add("ai.api.url", STUB::url);
+        registry.add("ai.api.key", () -> "test-key");
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STUB.close();
+    }
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void aiCallsDoNotWaitForDatabaseConnections() throws Exception {
+        User guest = userService.getGuestUser();
+        // One turn first, so the burst doesn't wait for class loading and Hibernate setup
+        chatService.processMessage("Warm-up", null, guest, null);
+
+        ExecutorService users = Executors.newFixedThreadPool(USERS);
+        try {
+            List<Future<ChatResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                String message = "Question " + i;
+                responses.add(users.submit(() -> chatService.processMessage(message, null, guest, null)));
+            }
+
+            for (Future<ChatResponse> response : responses) {
+                ChatResponse chat = response.get(30, TimeUnit.SECONDS);
+                assertThat(chat.getStatus()).as(chat.getError()).isEqualTo("success");
+                assertThat(chat.getResponse()).startsWith("Stub answer");
+            }
+        } finally {
+            users.shutdownNow();
+        }
+
+        // More AI calls were waiting at once than there are connections
+        assertThat(STUB.hits()).isEqualTo(USERS + 1);
+        assertThat(STUB.maxConcurrent()).isGreaterThan(POOL_SIZE);
+    }
+}
@@ -0,0 +1,114 @@
+package com.chat.service;
+
+import com.chat.model.Conversation;
+import com.chat.model.User;
+import com.chat.repository.ConversationRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.OutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Export Service Tests - a million messages are streamed with bounded memory
+ *
+ * The messages are inserted with plain SQL (fast), then exported. While the
+ * export writes, the test looks at Hibernate's persistence context: it must
+ * never hold more than about one clear interval of messages.
+ *
+ * Maven runs this test in its own JVM with -Xmx128m (execution "export-test"
+ * in pom.xml), so an export that kept its messages would run out of memory.
+ */
+@SpringBootTest(properties = {
+        // On disk, so the million rows don't count against the test's heap (see the pom); recreated every run
+        "spring.datasource.url=jdbc:h2:file:./target/chat-export;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.hibernate.ddl-auto=create",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.chat=INFO",
+        "management.tracing.sampling.probability=0"
+})
+class ExportServiceTest {
+
+    private static final int CONVERSATIONS = 100;
+    private static final int MESSAGES_PER_CONVERSATION = 10_000;
+    private static final long MESSAGES = (long) CONVERSATIONS * MESSAGES_PER_CONVERSATION;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // The export's own EntityManager while it runs (same thread, same transaction)
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    void exportsAMillionMessagesWithABoundedPersistenceContext() throws Exception {
+        User guest = userService.getGuestUser();
+        for (int c = 0; c < CONVERSATIONS; c++) {
+            Conversation conversation = new Conversation();
+            conversation.setTitle("Conversation " + c);
+            conversation.setUser(guest);
+            conversation = conversationRepository.save(conversation);
+
+            // IDs far above the sequence, so they don't clash with messages saved by the app
+            long firstId = 10_000_000L + (long) c * MESSAGES_PER_CONVERSATION;
+            jdbcTemplate.update("INSERT INTO chat_messages (id, role, content, conversation_id, created_at) "
+                            + "SELECT ? + X, CASEWHEN(MOD(X, 2) = 1, 'user', 'assistant'), 'Message number ' || X, ?, "
+                            + "DATEADD('SECOND', X, TIMESTAMP '2026-01-01 00:00:00') "
+                            + "FROM SYSTEM_RANGE(1, ?)",
+                    firstId, conversation.getId(), MESSAGES_PER_CONVERSATION);
+        }
+
+        LineCounter out = new LineCounter();
+        long exported = exportService.exportMessages(guest, false, out);
+
+        assertThat(exported).isEqualTo(MESSAGES);
+        assertThat(out.lines).isEqualTo(MESSAGES);
+        // One clear interval of messages, plus their conversation and user
+        assertThat(out.maxManagedEntities).isGreaterThan(0).isLessThanOrEqualTo(1000 + 2);
+    }
+
+    /**
+     * Counts NDJSON lines and, on every flush, the entities Hibernate holds
+     */
+    private class LineCounter extends OutputStream {
+        long lines;
+        int maxManagedEntities;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] == '\n') {
+                    lines++;
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            int managed = entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+            maxManagedEntities = Math.max(maxManagedEntities, managed);
+        }
+    }
+}
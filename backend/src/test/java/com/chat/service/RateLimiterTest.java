@@ -0,0 +1,74 @@
+package com.chat.service;
+
+import com.chat.config.RateLimitProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rate Limiter Tests - per-user and global buckets, and eviction
+ */
+class RateLimiterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RateLimiter rateLimiter(RateLimitProperties.Limit chat, RateLimitProperties.Limit chatGlobal,
+                                    RateLimitProperties.Limit history) {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setChat(chat);
+        properties.setChatGlobal(chatGlobal);
+        properties.setHistory(history);
+        return new RateLimiter(properties, meterRegistry);
+    }
+
+    private double rejected(String group, String scope) {
+        return meterRegistry.get("rate.limit.rejected").tags("group", group, "scope", scope).counter().count();
+    }
+
+    @Test
+    void globalRejectionDoesNotUseUpTheUsersOwnLimit() {
+        // The user may send 2 requests; all users together only 1 (refills take an hour)
+        RateLimiter limiter = rateLimiter(new RateLimitProperties.Limit(2, 1 / 60.0),
+                new RateLimitProperties.Limit(1, 1 / 60.0), new RateLimitProperties.Limit(0, 0));
+
+        assertThat(limiter.tryAcquire(RateLimiter.Group.CHAT, "user:1")).isZero();
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire(RateLimiter.Group.CHAT, "user:2")).isPositive();
+        }
+
+        // Every rejection came from the global bucket; user 2 still has both tokens
+        assertThat(rejected("chat", "global")).isEqualTo(5);
+        assertThat(rejected("chat", "key")).isZero();
+    }
+
+    @Test
+    void evictedBucketIsReplacedByAFullOne() throws InterruptedException {
+        // One request, refilled after 1ms
+        RateLimiter limiter = rateLimiter(new RateLimitProperties.Limit(0, 0), new RateLimitProperties.Limit(0, 0),
+                new RateLimitProperties.Limit(1, 60_000));
+
+        assertThat(limiter.tryAcquire(RateLimiter.Group.HISTORY, "user:1")).isZero();
+        TimeUnit.MILLISECONDS.sleep(5);
+        limiter.evictIdleBuckets();
+        assertThat(meterRegistry.get("rate.limit.buckets").tag("group", "history").gauge().value()).isZero();
+
+        assertThat(limiter.tryAcquire(RateLimiter.Group.HISTORY, "user:1")).isZero();
+        assertThat(limiter.tryAcquire(RateLimiter.Group.HISTORY, "user:1")).isPositive();
+        assertThat(meterRegistry.get("rate.limit.buckets").tag("group", "history").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void busyBucketIsNotEvicted() {
+        // One request per hour: after taking it, the bucket is not full again for a long time
+        RateLimiter limiter = rateLimiter(new RateLimitProperties.Limit(0, 0), new RateLimitProperties.Limit(0, 0),
+                new RateLimitProperties.Limit(1, 1 / 60.0));
+
+        assertThat(limiter.tryAcquire(RateLimiter.Group.HISTORY, "user:1")).isZero();
+        limiter.evictIdleBuckets();
+        assertThat(limiter.tryAcquire(RateLimiter.Group.HISTORY, "user:1")).isPositive();
+    }
+}
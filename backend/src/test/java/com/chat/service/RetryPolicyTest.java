@@ -0,0 +1,254 @@
+package com.chat.service;
+
+import com.chat.config.AIRouterProperties;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Retry Policy Tests - which errors are retried, how long we wait, and hedging
+ *
+ * The retry tests send real requests through AIService to StubAIServer, which
+ * counts them. The hedging tests use hand-made calls, so they can hang or fail
+ * exactly when needed.
+ */
+class RetryPolicyTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long HEDGE_DELAY_MS = 200;
+
+    private static final StubAIServer STUB = new StubAIServer(0);
+
+    private MeterRegistry meterRegistry;
+    private RetryPolicy retryPolicy;
+    private AIService aiService;
+
+    @AfterAll
+    static void stopStub() {
+        STUB.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        STUB.reset();
+        meterRegistry = new SimpleMeterRegistry();
+        retryPolicy = new RetryPolicy(meterRegistry);
+        ReflectionTestUtils.setField(retryPolicy, "maxAttempts", MAX_ATTEMPTS);
+        ReflectionTestUtils.setField(retryPolicy, "baseDelayMs", 10L);
+        ReflectionTestUtils.setField(retryPolicy, "maxDelayMs", 100L);
+        ReflectionTestUtils.setField(retryPolicy, "maxRetryAfterMs", 10_000L);
+        ReflectionTestUtils.setField(retryPolicy, "hedgeMinDelayMs", HEDGE_DELAY_MS);
+        ReflectionTestUtils.setField(retryPolicy, "hedgeMinSamples", 0L); // Hedge from the first call
+
+        aiService = new AIService(WebClient.builder(), new TokenBudgetContextWindowPolicy(),
+                new ResponseCache(null, Schedulers.immediate(), meterRegistry), meterRegistry,
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), retryPolicy,
+                new AIRouter(new AIRouterProperties(), meterRegistry, STUB.url(), "test-key", "test-model"),
+                new TokenQuotaScheduler(meterRegistry));
+        ReflectionTestUtils.setField(aiService, "modelName", "test-model");
+        ReflectionTestUtils.setField(aiService, "timeout", 5000);
+        ReflectionTestUtils.setField(aiService, "appUrl", "http://localhost");
+    }
+
+    private String ask() {
+        return aiService.getAIResponse("Hello", List.of(), null, null);
+    }
+
+    private double retries(String reason) {
+        return meterRegistry.get("ai.retry.attempts").tag("reason", reason).counter().count();
+    }
+
+    private double exhausted() {
+        return meterRegistry.get("ai.retry.exhausted").counter().count();
+    }
+
+    private double hedges(String result) {
+        return meterRegistry.get("ai.hedge.requests").tag("result", result).counter().count();
+    }
+
+    @Test
+    void serverErrorIsRetried() {
+        STUB.setStatuses(503);
+
+        String answer = ask();
+
+        assertThat(STUB.hits()).isEqualTo(2);
+        assertThat(answer).isEqualTo("Stub answer 2");
+        assertThat(retries("503")).isEqualTo(1);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        STUB.setStatus(503);
+
+        String answer = ask();
+
+        assertThat(STUB.hits()).isEqualTo(MAX_ATTEMPTS);
+        assertThat(answer).startsWith("I apologize");
+        assertThat(retries("503")).isEqualTo(MAX_ATTEMPTS - 1);
+        assertThat(exhausted()).isEqualTo(1);
+    }
+
+    @Test
+    void retryAfterIsTheMinimumDelay() {
+        STUB.setStatuses(429);
+        STUB.setRetryAfter("1");
+
+        long start = System.nanoTime();
+        String answer = ask();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // The jittered backoff alone would be at most 10ms
+        assertThat(answer).isEqualTo("Stub answer 2");
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(1000);
+
+        for (int i = 0; i < 100; i++) {
+            Duration delay = retryPolicy.retryDelay(new AIApiException(503, "busy", Duration.ofMillis(300)), 0);
+            assertThat(delay).isGreaterThanOrEqualTo(Duration.ofMillis(300));
+        }
+    }
+
+    @Test
+    void retryAfterAboveTheMaximumFailsAtOnce() {
+        STUB.setStatus(429);
+        STUB.setRetryAfter("60");
+
+        long start = System.nanoTime();
+        String answer = ask();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(STUB.hits()).isEqualTo(1);
+        assertThat(answer).startsWith("I apologize");
+        assertThat(elapsedMs).isLessThan(5000);
+        assertThat(exhausted()).isEqualTo(1);
+    }
+
+    @Test
+    void clientErrorIsNotRetried() {
+        STUB.setStatus(400);
+
+        String answer = ask();
+
+        assertThat(STUB.hits()).isEqualTo(1);
+        assertThat(answer).startsWith("I apologize");
+        assertThat(exhausted()).isZero();
+    }
+
+    @Test
+    void timeoutIsNotRetried() {
+        // The caller already waited the whole timeout - a retry would double it
+        ask(); // Warm-up, so the timeout doesn't run out while the first connection is set up
+        STUB.reset();
+        ReflectionTestUtils.setField(aiService, "timeout", 200);
+        STUB.setLatencyMs(1000);
+
+        String answer = ask();
+
+        assertThat(STUB.hits()).isEqualTo(1);
+        assertThat(answer).startsWith("I apologize");
+
+        assertThat(retryPolicy.retryDelay(new TimeoutException("Did not observe any item"), 0)).isNull();
+    }
+
+    @Test
+    void openCircuitIsNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("test");
+        circuitBreaker.transitionToOpenState();
+
+        Mono<String> call = retryPolicy.execute(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(CallNotPermittedException.createCallNotPermittedException(circuitBreaker));
+        });
+
+        assertThatThrownBy(call::block).isInstanceOf(CallNotPermittedException.class);
+        assertThat(attempts.get()).isEqualTo(1);
+    }
+
+    @Test
+    void hedgeBeatsAHungAttemptAndCancelsIt() throws InterruptedException {
+        ReflectionTestUtils.setField(retryPolicy, "hedgeEnabled", true);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch firstCancelled = new CountDownLatch(1);
+
+        Mono<String> call = retryPolicy.execute(() -> attempts.incrementAndGet() == 1
+                ? Mono.<String>never().doOnCancel(firstCancelled::countDown)
+                : Mono.just("hedge answer"));
+
+        assertThat(call.block(Duration.ofSeconds(5))).isEqualTo("hedge answer");
+        assertThat(attempts.get()).isEqualTo(2);
+        // Cancelled on the hedge's thread right after its answer was handed over
+        assertThat(firstCancelled.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(hedges("sent")).isEqualTo(1);
+        assertThat(hedges("won")).isEqualTo(1);
+    }
+
+    @Test
+    void errorBeforeTheHedgeDelayEndsTheCall() throws InterruptedException {
+        ReflectionTestUtils.setField(retryPolicy, "hedgeEnabled", true);
+        ReflectionTestUtils.setField(retryPolicy, "maxAttempts", 1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Mono<String> call = retryPolicy.execute(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new AIApiException(503, "AI_API_ERROR_503", null));
+        });
+
+        long start = System.nanoTime();
+        assertThatThrownBy(call::block).isInstanceOf(AIApiException.class);
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(HEDGE_DELAY_MS);
+
+        // The hedge timer was cancelled with the call
+        Thread.sleep(2 * HEDGE_DELAY_MS);
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(hedges("sent")).isZero();
+    }
+
+    @Test
+    void parsesRetryAfterSeconds() {
+        assertThat(RetryPolicy.parseRetryAfter("120")).isEqualTo(Duration.ofSeconds(120));
+        assertThat(RetryPolicy.parseRetryAfter(" 5 ")).isEqualTo(Duration.ofSeconds(5));
+        assertThat(RetryPolicy.parseRetryAfter("-3")).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void parsesRetryAfterDate() {
+        String inThirtySeconds = DateTimeFormatter.RFC_1123_DATE_TIME
+                .format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30));
+        String inThePast = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+        assertThat(RetryPolicy.parseRetryAfter(inThirtySeconds))
+                .isBetween(Duration.ofSeconds(28), Duration.ofSeconds(30));
+        assertThat(RetryPolicy.parseRetryAfter(inThePast)).isEqualTo(Duration.ZERO);
+    }
+
+    @Test
+    void ignoresMissingOrInvalidRetryAfter() {
+        assertThat(RetryPolicy.parseRetryAfter(null)).isNull();
+        assertThat(RetryPolicy.parseRetryAfter(" ")).isNull();
+        assertThat(RetryPolicy.parseRetryAfter("soon")).isNull();
+    }
+}
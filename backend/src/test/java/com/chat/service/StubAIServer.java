@@ -0,0 +1,136 @@
+package com.chat.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stub AI Server - A fake AI API for tests, on a random local port
+ *
+ * Answers every chat completion request after latencyMs, with the given
+ * HTTP status, and counts the requests (hits) and how many were answered
+ * at the same time (maxConcurrent). setStatuses scripts the next few
+ * answers (e.g. 503, then 200); error answers carry the Retry-After header
+ * if one is set.
+ */
+class StubAIServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    private volatile long latencyMs;
+    private volatile int status = 200;
+    private volatile String retryAfter;
+    private final Queue<Integer> scripted = new ConcurrentLinkedQueue<>();
+
+    StubAIServer(long latencyMs) {
+        this.latencyMs = latencyMs;
+        try {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start the stub AI server", e);
+        }
+        server.createContext("/v1/chat/completions", this::answer);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * URL to use as ai.api.url
+     */
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    int hits() {
+        return hits.get();
+    }
+
+    int maxConcurrent() {
+        return maxConcurrent.get();
+    }
+
+    void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * Statuses of the next answers, in order; later answers use the normal status again
+     */
+    void setStatuses(int... statuses) {
+        scripted.clear();
+        for (int code : statuses) {
+            scripted.add(code);
+        }
+    }
+
+    /**
+     * Retry-After header of error answers (null = none)
+     */
+    void setRetryAfter(String retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    void reset() {
+        hits.set(0);
+        maxConcurrent.set(0);
+        latencyMs = 0;
+        status = 200;
+        retryAfter = null;
+        scripted.clear();
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        int answer = hits.incrementAndGet();
+        maxConcurrent.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            exchange.getRequestBody().readAllBytes();
+            TimeUnit.MILLISECONDS.sleep(latencyMs);
+
+            Integer next = scripted.poll();
+            int code = next != null ? next : status;
+            String body = code == 200
+                    ? "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"Stub answer " + answer + "\"},"
+                      + "\"finish_reason\":\"stop\"}],"
+                      + "\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":5,\"total_tokens\":15}}"
+                    : "{\"error\":{\"message\":\"Stub error\"}}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (code != 200 && retryAfter != null) {
+                exchange.getResponseHeaders().set("Retry-After", retryAfter);
+            }
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
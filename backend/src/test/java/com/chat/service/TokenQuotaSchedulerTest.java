@@ -0,0 +1,103 @@
+package com.chat.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Token Quota Scheduler Tests - budget must never leak, whatever a waiting request does
+ *
+ * The budget refills very slowly (1000 tokens per minute), so any tokens that
+ * are not given back show up as a smaller budget at the end of a test.
+ */
+class TokenQuotaSchedulerTest {
+
+    private static final int CAPACITY = 1000;
+
+    private MeterRegistry meterRegistry;
+    private TokenQuotaScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new TokenQuotaScheduler(meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "tokensPerMinute", CAPACITY);
+        ReflectionTestUtils.setField(scheduler, "maxQueued", 100);
+        ReflectionTestUtils.setField(scheduler, "maxWaitMs", 50L);
+        scheduler.init();
+    }
+
+    private double available() {
+        return meterRegistry.get("ai.quota.tokens.available").gauge().value();
+    }
+
+    private double used() {
+        return meterRegistry.get("ai.quota.tokens.used").counter().count();
+    }
+
+    private double queued() {
+        return meterRegistry.get("ai.quota.queue.depth").gauge().value();
+    }
+
+    /**
+     * A call that takes the whole budget until the returned sink completes it (with 0 tokens used)
+     */
+    private Sinks.One<Long> holdWholeBudget() {
+        Sinks.One<Long> done = Sinks.one();
+        scheduler.submit(new TokenQuotaScheduler.Flow("holder", 1), CAPACITY, 0, done::asMono, used -> used)
+                .subscribe();
+        assertThat(available()).isZero();
+        return done;
+    }
+
+    @Test
+    void timedOutRequestGetsNoTokens() {
+        Sinks.One<Long> holder = holdWholeBudget();
+
+        Mono<Long> waiting = scheduler.submit(new TokenQuotaScheduler.Flow("user:1", 1), 100, 0,
+                () -> Mono.just(100L), used -> used);
+        assertThatThrownBy(waiting::block).isInstanceOf(QuotaExceededException.class);
+        assertThat(queued()).isZero();
+
+        holder.tryEmitValue(0L);
+        assertThat(available()).isGreaterThanOrEqualTo(CAPACITY - 1);
+    }
+
+    /**
+     * A call cancelled while running keeps its reservation (counted as used,
+     * the API may have billed it); every other token must be back in the budget
+     */
+    @Test
+    void cancelRacingWithAdmissionGivesTokensBack() throws InterruptedException {
+        for (int round = 0; round < 300; round++) {
+            setUp();
+            Sinks.One<Long> holder = holdWholeBudget();
+
+            List<Disposable> waiting = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                waiting.add(scheduler.submit(new TokenQuotaScheduler.Flow("user:" + i, 1), 100, 0,
+                        () -> Mono.just(0L), used -> used).subscribe());
+            }
+
+            // Budget comes back (and is handed to the waiters) while they cancel
+            Thread cancelling = new Thread(() -> waiting.forEach(Disposable::dispose));
+            cancelling.start();
+            holder.tryEmitValue(0L);
+            cancelling.join();
+
+            assertThat(queued()).isZero();
+            assertThat(available() + used()).as("budget after round %d", round).isGreaterThanOrEqualTo(CAPACITY - 1);
+        }
+    }
+}
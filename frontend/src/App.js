@@ -56,6 +56,7 @@ function App() {
   // Handle logout
   const handleLogout = () => {
     localStorage.removeItem('user');
+    localStorage.removeItem('token');
     setUser(null);
     setConversations([]);
     setActiveConversationId(null);
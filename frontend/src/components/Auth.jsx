@@ -70,6 +70,8 @@ const Auth = ({ onLoginSuccess }) => {
         username: response.username,
         email: response.email,
       }));
+      // Sent as "Authorization: Bearer ..." by services/api.js
+      localStorage.setItem('token', response.token);
       onLoginSuccess(response);
     } catch (error) {
       let errorMessage = 'Login failed. Please check your credentials.';
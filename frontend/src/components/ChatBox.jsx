@@ -35,9 +35,15 @@ const ChatBox = ({ conversationId: propConversationId, onConversationChange, onC
   const [conversationId, setConversationId] = useState(propConversationId); // Current conversation ID
   const [backendOnline, setBackendOnline] = useState(false); // Is backend running?
   const [loadingHistory, setLoadingHistory] = useState(false); // Loading conversation history
+  const [olderCursor, setOlderCursor] = useState(null); // Cursor for older messages (null = none left)
+  const [loadingOlder, setLoadingOlder] = useState(false); // Loading older messages on scroll
   
   // Ref to scroll chat to bottom
   const messagesEndRef = useRef(null);
+  // Ref to the scrollable messages area (to detect scrolling to the top)
+  const messagesAreaRef = useRef(null);
+  // Set while older messages are prepended, so we don't jump to the bottom
+  const keepScrollRef = useRef(null);
 
   // Update conversationId when prop changes
   useEffect(() => {
@@ -46,6 +52,7 @@ const ChatBox = ({ conversationId: propConversationId, onConversationChange, onC
       loadConversationHistory(propConversationId);
     } else {
       setMessages([]);
+      setOlderCursor(null);
     }
   }, [propConversationId]);
 
@@ -59,27 +66,39 @@ const ChatBox = ({ conversationId: propConversationId, onConversationChange, onC
   /**
    * useEffect Hook - Runs when messages change
    * Auto-scrolls chat to bottom when new message arrives
+   * (but keeps the position when older messages were added on top)
    */
   useEffect(() => {
+    const area = messagesAreaRef.current;
+    if (keepScrollRef.current !== null && area) {
+      area.scrollTop = area.scrollHeight - keepScrollRef.current;
+      keepScrollRef.current = null;
+      return;
+    }
     scrollToBottom();
   }, [messages]);
 
   /**
-   * Load conversation history from database
+   * Converts messages from the backend to the format used here
+   */
+  const formatMessages = (history) => history.map(msg => ({
+    role: msg.role,
+    content: msg.content,
+    timestamp: msg.createdAt || msg.timestamp,
+  }));
+
+  /**
+   * Load conversation history from database (newest page only)
    */
   const loadConversationHistory = async (convId) => {
     if (!convId) return;
     
     setLoadingHistory(true);
     try {
-      const history = await getConversationHistory(convId);
+      const page = await getConversationHistory(convId);
       // Convert to message format with timestamps
-      const formattedMessages = history.map(msg => ({
-        role: msg.role,
-        content: msg.content,
-        timestamp: msg.createdAt || msg.timestamp,
-      }));
-      setMessages(formattedMessages);
+      setMessages(formatMessages(page.messages));
+      setOlderCursor(page.nextCursor);
     } catch (error) {
       console.error('Error loading conversation history:', error);
       antMessage.error('Failed to load conversation history');
@@ -88,6 +107,28 @@ const ChatBox = ({ conversationId: propConversationId, onConversationChange, onC
     }
   };
 
+  /**
+   * Loads the previous page of messages when the user scrolls to the top
+   */
+  const handleMessagesScroll = async (e) => {
+    if (e.currentTarget.scrollTop > 0 || !olderCursor || loadingOlder || !conversationId) return;
+    
+    const area = e.currentTarget;
+    setLoadingOlder(true);
+    try {
+      const page = await getConversationHistory(conversationId, { before: olderCursor });
+      // Remember distance from the bottom, so the view stays where it was
+      keepScrollRef.current = area.scrollHeight - area.scrollTop;
+      setMessages((prev) => [...formatMessages(page.messages), ...prev]);
+      setOlderCursor(page.nextCursor);
+    } catch (error) {
+      console.error('Error loading older messages:', error);
+      antMessage.error('Failed to load older messages');
+    } finally {
+      setLoadingOlder(false);
+    }
+  };
+
   /**
    * Checks if backend is running
    */
@@ -213,6 +254,7 @@ const ChatBox = ({ conversationId: propConversationId, onConversationChange, onC
    */
   const handleClear = () => {
     setMessages([]);
+    setOlderCursor(null);
     setConversationId(null);
     if (onConversationChange) {
       onConversationChange(null);
@@ -270,7 +312,12 @@ const ChatBox = ({ conversationId: propConversationId, onConversationChange, onC
       </div>
 
       {/* Messages Area */}
-      <div className="chat-messages">
+      <div className="chat-messages" ref={messagesAreaRef} onScroll={handleMessagesScroll}>
+        {loadingOlder && (
+          <div className="loading-container">
+            <Spin size="small" />
+          </div>
+        )}
         {loadingHistory ? (
           <div className="loading-container">
             <Spin size="large" />
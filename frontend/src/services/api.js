@@ -22,6 +22,15 @@ const apiClient = axios.create({
   timeout: 30000, // 30 seconds timeout
 });
 
+// Send the login token (saved by Auth.jsx) with every request
+apiClient.interceptors.request.use((config) => {
+  const token = localStorage.getItem('token');
+  if (token) {
+    config.headers.Authorization = `Bearer ${token}`;
+  }
+  return config;
+});
+
 /**
  * Health Check - Tests if backend is running
  * GET /api/health
@@ -69,15 +78,21 @@ export const sendChatMessage = async (message, conversationId = null) => {
 };
 
 /**
- * Get Conversation History - Retrieves all messages in a conversation with timestamps
- * GET /api/history/{conversationId}
+ * Get Conversation History - Retrieves one page of messages with timestamps
+ * GET /api/history/{conversationId}?before={messageId}&limit={limit}
  * 
  * @param {string|number} conversationId - Conversation ID
- * @returns {Promise} List of messages with timestamps
+ * @param {Object} options - Optional paging: { before: messageId, limit: 50 }
+ * @returns {Promise} Page: { messages: [...], nextCursor, prevCursor }
+ *                    Pass nextCursor as `before` to load older messages
  */
-export const getConversationHistory = async (conversationId) => {
+export const getConversationHistory = async (conversationId, { before = null, limit = 50 } = {}) => {
   try {
-    const response = await apiClient.get(`/history/${conversationId}`);
+    const params = { limit };
+    if (before) {
+      params.before = before;
+    }
+    const response = await apiClient.get(`/history/${conversationId}`, { params });
     return response.data;
   } catch (error) {
     console.error('Error getting conversation history:', error);